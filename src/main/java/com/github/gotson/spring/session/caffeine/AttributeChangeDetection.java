@@ -0,0 +1,28 @@
+package com.github.gotson.spring.session.caffeine;
+
+/**
+ * How a {@link CaffeineIndexedSessionRepository} decides whether writing an attribute
+ * changes the session.
+ *
+ * @see CaffeineIndexedSessionRepository#setAttributeChangeDetection(AttributeChangeDetection)
+ */
+public enum AttributeChangeDetection {
+
+    /**
+     * Every attribute write or removal changes the session.
+     */
+    ALWAYS,
+
+    /**
+     * Writing the same instance as the stored value, or removing an absent attribute, does
+     * not change the session. Stored values are shared with the cache, so modifications
+     * made to a mutable value are visible without saving it again.
+     */
+    IDENTITY,
+
+    /**
+     * Writing a value equal to the stored value, or removing an absent attribute, does not
+     * change the session. The stored instance is kept.
+     */
+    EQUALITY
+}
@@ -0,0 +1,116 @@
+package com.github.gotson.spring.session.caffeine;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Clock} with a millisecond granularity, that reads a time updated every
+ * millisecond by a background thread instead of reading the system clock.
+ *
+ * <p>
+ * The background thread is shared. It is started by the first read, and stops by itself
+ * once the clock has not been read for a second, so that it does not depend on its users
+ * releasing it: the next read then reads the system clock and starts it again. The time
+ * follows the system clock, and may jump forward or backward with it, so it is only used
+ * for the timestamps of sessions, never to measure durations.
+ */
+final class CachedClock extends Clock {
+
+    private static final CachedClock UTC = new CachedClock(ZoneOffset.UTC);
+
+    private static final int IDLE_TICKS = 1_000;
+
+    private static volatile long currentMillis;
+
+    private static volatile boolean ticking;
+
+    // whether the clock was read since the last idle check
+    private static volatile boolean read;
+
+    private static ScheduledExecutorService ticker;
+
+    private static int ticks;
+
+    private final ZoneId zone;
+
+    private CachedClock(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Get the clock in UTC.
+     *
+     * @return the clock
+     */
+    static CachedClock utc() {
+        return UTC;
+    }
+
+    private static long currentMillis() {
+        if (!ticking) {
+            start();
+            return System.currentTimeMillis();
+        }
+        if (!read) {
+            read = true;
+        }
+        return currentMillis;
+    }
+
+    private static synchronized void start() {
+        if (ticking) {
+            return;
+        }
+        currentMillis = System.currentTimeMillis();
+        read = true;
+        ticks = 0;
+        ticker = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "caffeine-session-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(CachedClock::tick, 1, 1, TimeUnit.MILLISECONDS);
+        ticking = true;
+    }
+
+    private static synchronized void tick() {
+        currentMillis = System.currentTimeMillis();
+        if (++ticks < IDLE_TICKS) {
+            return;
+        }
+        ticks = 0;
+        if (read) {
+            read = false;
+        } else {
+            // not read for a second, the next read starts it again
+            ticking = false;
+            ticker.shutdown();
+            ticker = null;
+        }
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return this.zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this.zone.equals(zone) ? this : new CachedClock(zone);
+    }
+
+    @Override
+    public long millis() {
+        return currentMillis();
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(currentMillis());
+    }
+}
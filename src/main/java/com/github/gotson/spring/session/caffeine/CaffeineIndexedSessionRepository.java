@@ -3,31 +3,64 @@ package com.github.gotson.spring.session.caffeine;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.gotson.spring.session.caffeine.events.CaffeineSessionExpiredEvent;
+import com.github.gotson.spring.session.caffeine.events.SessionIdChangedEvent;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.jspecify.annotations.NonNull;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.session.DelegatingIndexResolver;
 import org.springframework.session.FindByIndexNameSessionRepository;
 import org.springframework.session.IndexResolver;
 import org.springframework.session.MapSession;
 import org.springframework.session.PrincipalNameIndexResolver;
 import org.springframework.session.Session;
+import org.springframework.session.SessionIdGenerator;
 import org.springframework.session.events.AbstractSessionEvent;
 import org.springframework.session.events.SessionCreatedEvent;
 import org.springframework.session.events.SessionDeletedEvent;
-import org.springframework.session.events.SessionExpiredEvent;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 /**
  * A {@link org.springframework.session.SessionRepository} implementation that stores
@@ -38,61 +71,256 @@ import java.util.concurrent.Executor;
  *
  * <ul>
  * <li>entryAdded - {@link SessionCreatedEvent}</li>
- * <li>entryEvicted - {@link SessionExpiredEvent}</li>
+ * <li>entryEvicted - {@link CaffeineSessionExpiredEvent}, a {@link org.springframework.session.events.SessionExpiredEvent}
+ * carrying the reason of the expiration</li>
  * <li>entryRemoved - {@link SessionDeletedEvent}</li>
  * </ul>
  */
 public class CaffeineIndexedSessionRepository
-    implements FindByIndexNameSessionRepository<CaffeineIndexedSessionRepository.CaffeineSession> {
+    implements FindByIndexNameSessionRepository<CaffeineIndexedSessionRepository.CaffeineSession>,
+    ApplicationListener<ContextRefreshedEvent> {
 
     /**
      * The principal name custom attribute name.
      */
     public static final String PRINCIPAL_NAME_ATTRIBUTE = "principalName";
 
+    /**
+     * Upper bound of the initial capacity derived from the peak session count of a
+     * previous run.
+     */
+    private static final int MAX_HINTED_INITIAL_CAPACITY = 1 << 22;
+
+    private static final int MAXIMUM_INTERNED_STRINGS = 1 << 16;
+
+    /**
+     * Prefix of the keys of the entries written while warming up the cache. Generated
+     * session ids never contain {@code #}.
+     */
+    private static final String WARM_UP_KEY_PREFIX = "#warm-up-";
+
+    private static final int WARM_UP_ENTRIES = 1024;
+
     private static final String SPRING_SECURITY_CONTEXT = "SPRING_SECURITY_CONTEXT";
 
+    /**
+     * Number of sessions visited by the cold session sweep between two pauses.
+     */
+    private static final int COLD_SESSION_BATCH_SIZE = 256;
+
+    /**
+     * Duration of the pause after each batch of the cold session sweep, relative to the
+     * time spent on the batch, so that the sweep uses a fifth of a processor at most.
+     */
+    private static final int COLD_SESSION_PAUSE_RATIO = 4;
+
+    /**
+     * The thread sweeping cold sessions, shared by all repositories, such as the partitions
+     * of a {@link PartitionedCaffeineSessionRepository}. It stops once no repository has a
+     * sweep scheduled.
+     */
+    private static final ScheduledThreadPoolExecutor coldSessionSweeper = newColdSessionSweeper();
+
+    private static final Log logger = LogFactory.getLog(CaffeineIndexedSessionRepository.class);
+
     private ApplicationEventPublisher eventPublisher = (event) -> {
     };
 
+    /**
+     * The session event types that have listeners, known once the context publishing
+     * them is refreshed.
+     */
+    private volatile SessionEventListeners eventListeners = SessionEventListeners.ALL;
+
     /**
      * If non-null, this value is used to override
      * {@link MapSession#setMaxInactiveInterval(Duration)}.
      */
-    private Integer defaultMaxInactiveInterval;
+    private volatile Integer defaultMaxInactiveInterval;
+
+    /**
+     * If non-null, sessions expire once they reach this age, regardless of their activity.
+     */
+    private Duration maxSessionLifetime;
 
     private IndexResolver<Session> indexResolver = new DelegatingIndexResolver<>(new PrincipalNameIndexResolver<>());
 
+    private final ResolvedPrincipalCache resolvedPrincipals = new ResolvedPrincipalCache();
+
+    // only the default index resolver is known to depend on the authentication alone
+    private boolean memoizePrincipals = true;
+
+    private SessionIdGenerator sessionIdGenerator = SecureSessionIdGenerator.getInstance();
+
+    private Clock clock = CachedClock.utc();
+
+    private boolean customClock;
+
     private Executor executor;
 
+    private Executor instrumentedExecutor;
+
+    private final LongAdder pendingTasks = new LongAdder();
+
     private Scheduler scheduler;
 
-    private Cache<String, MapSession> sessions;
+    private EventDispatchMode eventDispatchMode = EventDispatchMode.DEFAULT;
+
+    private Integer initialCapacity;
+
+    private Long maximumSize;
+
+    private Long maximumWeight;
+
+    private boolean recordStats;
+
+    private PeakSessionCount peakSessionCount;
+
+    private boolean warmUp;
+
+    private Set<String> indexedAttributeNames = Collections.emptySet();
+
+    private boolean lazySessionCreation;
+
+    private boolean compactStorage;
+
+    private Duration coldSessionThreshold;
+
+    private ScheduledFuture<?> coldSessionSweep;
+
+    private ClassLoader coldSessionClassLoader;
+
+    private WeakInterner interner;
+
+    private Integer maximumSessionsPerPrincipal;
+
+    private final ConcurrentMap<String, Set<String>> principalSessions = new ConcurrentHashMap<>();
+
+    private AttributeChangeDetection attributeChangeDetection = AttributeChangeDetection.ALWAYS;
+
+    private MemoryPressureController memoryPressureController;
+
+    private final Consumer<Boolean> memoryPressureListener = (underPressure) -> onMemoryPressureChanged();
+
+    private SessionAdmissionController admissionController;
+
+    private boolean lightweightExpiredEvents;
+
+    private Set<String> expiredEventAttributeNames = Collections.emptySet();
+
+    private final Queue<CaffeineSessionExpiredEvent> pendingExpiredEvents = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean drainingExpiredEvents = new AtomicBoolean();
+
+    private final ConcurrentMap<String, RenameMark> renameMarks = new ConcurrentHashMap<>();
+
+    private Cache<String, Session> sessions;
 
     @PostConstruct
     public void init() {
-        Caffeine<String, MapSession> builder = Caffeine.newBuilder()
-            .removalListener(this::removalListener)
-            .expireAfter(new Expiry<>() {
+        Caffeine<String, Session> builder = Caffeine.newBuilder()
+            .expireAfter(new Expiry<String, Session>() {
                 @Override
-                public long expireAfterCreate(@NonNull String key, @NonNull MapSession value, long currentTime) {
-                    return value.getMaxInactiveInterval().toNanos();
+                public long expireAfterCreate(@NonNull String key, @NonNull Session value, long currentTime) {
+                    return expiresAfter(value);
                 }
 
                 @Override
-                public long expireAfterUpdate(@NonNull String key, @NonNull MapSession value, long currentTime, long currentDuration) {
-                    return value.getMaxInactiveInterval().toNanos();
+                public long expireAfterUpdate(@NonNull String key, @NonNull Session value, long currentTime, long currentDuration) {
+                    if (value instanceof ColdSession) {
+                        // compressing a session does not extend its life
+                        return currentDuration;
+                    }
+                    return expiresAfter(value);
                 }
 
                 @Override
-                public long expireAfterRead(@NonNull String key, @NonNull MapSession value, long currentTime, long currentDuration) {
+                public long expireAfterRead(@NonNull String key, @NonNull Session value, long currentTime, long currentDuration) {
                     return currentDuration;
                 }
             });
-        if (this.executor != null) builder.executor(this.executor);
+        if (this.lightweightExpiredEvents) builder.evictionListener(this::evictionListener);
+        else builder.removalListener(this::removalListener);
+        if (this.customClock) {
+            // otherwise the cache measures durations with the monotonic System.nanoTime()
+            builder.ticker(() -> TimeUnit.MILLISECONDS.toNanos(this.clock.millis()));
+        }
+        if (this.eventDispatchMode != EventDispatchMode.SYNCHRONOUS) {
+            this.instrumentedExecutor = countPendingTasks((this.executor != null) ? this.executor : ForkJoinPool.commonPool());
+        }
+        builder.executor(executor());
         if (this.scheduler != null) builder.scheduler(this.scheduler);
+        Integer initialCapacity = (this.initialCapacity != null) ? this.initialCapacity : hintedInitialCapacity();
+        if (initialCapacity != null) builder.initialCapacity(initialCapacity);
+        if (this.maximumSize != null) builder.maximumSize(this.maximumSize);
+        if (this.maximumWeight != null) {
+            builder.maximumWeight(this.maximumWeight)
+                .weigher((String id, Session session) -> (int) Math.min(Integer.MAX_VALUE, SessionSummary.estimateSize(session)));
+        }
+        if (this.recordStats) builder.recordStats();
 
         this.sessions = builder.build();
+
+        if (this.memoryPressureController != null) {
+            this.memoryPressureController.addListener(this.memoryPressureListener);
+        }
+        if (this.warmUp) {
+            warmUp();
+        }
+        if (this.coldSessionThreshold != null) {
+            startColdSessionSweeper();
+        }
+        FlightRecorderEvents.recordRemovalBacklog(this);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        FlightRecorderEvents.stopRecordingRemovalBacklog(this);
+        if (this.memoryPressureController != null) {
+            this.memoryPressureController.removeListener(this.memoryPressureListener);
+        }
+        if (this.coldSessionSweep != null) {
+            this.coldSessionSweep.cancel(true);
+            this.coldSessionSweep = null;
+        }
+        if (this.peakSessionCount != null) {
+            this.peakSessionCount.persist();
+        }
+    }
+
+    private Integer hintedInitialCapacity() {
+        if (this.peakSessionCount == null) {
+            return null;
+        }
+        long peak = this.peakSessionCount.load();
+        if (peak == 0) {
+            return null;
+        }
+        if (this.maximumSize != null) {
+            peak = Math.min(peak, this.maximumSize);
+        }
+        return (int) Math.min(peak, MAX_HINTED_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Exercise the cache and the id generator before the first request, so that lazily
+     * allocated structures (the hash table, read and write buffers, per-thread random
+     * generators) and the code paths of the repository are ready. Warm-up entries never
+     * publish events.
+     */
+    private void warmUp() {
+        this.sessionIdGenerator.generate();
+        MapSession session = new MapSession(WARM_UP_KEY_PREFIX);
+        for (int i = 0; i < WARM_UP_ENTRIES; i++) {
+            String key = WARM_UP_KEY_PREFIX + i;
+            this.sessions.put(key, session);
+            // map view reads do not record statistics
+            this.sessions.asMap().get(key);
+        }
+        for (int i = 0; i < WARM_UP_ENTRIES; i++) {
+            this.sessions.invalidate(WARM_UP_KEY_PREFIX + i);
+        }
+        this.sessions.cleanUp();
     }
 
     /**
@@ -106,12 +334,30 @@ public class CaffeineIndexedSessionRepository
     public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
         Assert.notNull(applicationEventPublisher, "ApplicationEventPublisher cannot be null");
         this.eventPublisher = applicationEventPublisher;
+        this.eventListeners = SessionEventListeners.ALL;
+    }
+
+    /**
+     * Discover which session events have listeners once the {@link ApplicationContext}
+     * used as {@link #setApplicationEventPublisher(ApplicationEventPublisher) event
+     * publisher} is refreshed. Session events nobody listens to are then neither created
+     * nor published. Until then, or with another publisher, all session events are
+     * published. Listeners added after the refresh are not discovered.
+     *
+     * @param event the refresh event
+     */
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (event.getApplicationContext() == this.eventPublisher) {
+            this.eventListeners = SessionEventListeners.discover(event.getApplicationContext());
+        }
     }
 
     /**
      * Set the maximum inactive interval in seconds between requests before newly created
      * sessions will be invalidated. A negative time indicates that the session will never
-     * time out. The default is 1800 (30 minutes).
+     * time out. The default is 1800 (30 minutes). Can be changed at runtime, in which case
+     * sessions created before keep their maximum inactive interval.
      *
      * @param defaultMaxInactiveInterval the maximum inactive interval in seconds
      */
@@ -119,14 +365,61 @@ public class CaffeineIndexedSessionRepository
         this.defaultMaxInactiveInterval = defaultMaxInactiveInterval;
     }
 
+    Integer getDefaultMaxInactiveInterval() {
+        return this.defaultMaxInactiveInterval;
+    }
+
+    /**
+     * Set the maximum lifetime in seconds of sessions, measured from their creation time.
+     * Sessions expire when they reach this age even if they are still active. A
+     * {@code null} or negative value indicates that sessions only expire after being
+     * inactive. The default is {@code null}.
+     *
+     * @param maxSessionLifetime the maximum lifetime of sessions in seconds
+     */
+    public void setMaxSessionLifetime(Integer maxSessionLifetime) {
+        this.maxSessionLifetime = (maxSessionLifetime != null && maxSessionLifetime >= 0)
+            ? Duration.ofSeconds(maxSessionLifetime) : null;
+    }
+
     /**
-     * Set the {@link IndexResolver} to use.
+     * Set the {@link IndexResolver} to use. The principal name resolved by the default
+     * index resolver is memoized per security context, a custom index resolver is called
+     * each time the security context is written.
      *
      * @param indexResolver the index resolver
      */
     public void setIndexResolver(IndexResolver<Session> indexResolver) {
         Assert.notNull(indexResolver, "indexResolver cannot be null");
         this.indexResolver = indexResolver;
+        this.memoizePrincipals = false;
+    }
+
+    /**
+     * Set the {@link SessionIdGenerator} to use to generate session ids. The default is
+     * {@link SecureSessionIdGenerator}.
+     *
+     * @param sessionIdGenerator the {@link SessionIdGenerator} to use
+     */
+    public void setSessionIdGenerator(SessionIdGenerator sessionIdGenerator) {
+        Assert.notNull(sessionIdGenerator, "sessionIdGenerator cannot be null");
+        this.sessionIdGenerator = sessionIdGenerator;
+    }
+
+    /**
+     * Set the {@link Clock} used for the timestamps of new sessions, to check whether
+     * sessions expired, and as the time source of the underlying cache, which must then
+     * never go backward. The default is a clock with a millisecond granularity, updated
+     * every millisecond by a background thread while it is read, to avoid reading the
+     * system clock on every operation: the underlying cache then measures durations with
+     * {@link System#nanoTime()}, unaffected by steps of the system clock.
+     *
+     * @param clock the {@link Clock} to use. Cannot be null.
+     */
+    public void setClock(Clock clock) {
+        Assert.notNull(clock, "clock cannot be null");
+        this.clock = clock;
+        this.customClock = true;
     }
 
     /**
@@ -153,40 +446,679 @@ public class CaffeineIndexedSessionRepository
         this.scheduler = scheduler;
     }
 
-    private void removalListener(String key, MapSession session, RemovalCause cause) {
-        if (session != null) {
+    /**
+     * Sets how session events are dispatched. The default is
+     * {@link EventDispatchMode#DEFAULT}.
+     *
+     * @param eventDispatchMode the {@link EventDispatchMode} to use. Cannot be null.
+     */
+    public void setEventDispatchMode(EventDispatchMode eventDispatchMode) {
+        Assert.notNull(eventDispatchMode, "eventDispatchMode cannot be null");
+        this.eventDispatchMode = eventDispatchMode;
+    }
+
+    /**
+     * Sets the initial capacity of the cache. The default is Caffeine's default.
+     *
+     * @param initialCapacity the initial capacity of the cache
+     */
+    public void setInitialCapacity(Integer initialCapacity) {
+        this.initialCapacity = initialCapacity;
+    }
+
+    /**
+     * Sets the maximum number of sessions the cache may contain. Sessions evicted when
+     * this size is exceeded publish a {@link CaffeineSessionExpiredEvent}. The default is
+     * {@code null}, meaning the number of sessions is not bounded. Cannot be combined
+     * with {@link #setMaximumWeight(Long)}. Can be changed at runtime if a maximum size
+     * was set on initialization, in which case sessions are evicted right away if needed.
+     *
+     * @param maximumSize the maximum number of sessions
+     */
+    public void setMaximumSize(Long maximumSize) {
+        if (this.sessions != null) {
+            resize(maximumSize, false);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    Long getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * Sets the maximum weight of the sessions the cache may contain, the weight of a
+     * session being a rough estimate in bytes of the heap it retains. Sessions evicted
+     * when this weight is exceeded publish a {@link CaffeineSessionExpiredEvent}. The
+     * default is {@code null}, meaning the weight of sessions is not bounded. Cannot be
+     * combined with {@link #setMaximumSize(Long)}. Can be changed at runtime if a maximum
+     * weight was set on initialization, in which case sessions are evicted right away if
+     * needed.
+     *
+     * @param maximumWeight the maximum weight of sessions
+     * @see SessionSummary#estimatedSizeInBytes()
+     */
+    public void setMaximumWeight(Long maximumWeight) {
+        if (this.sessions != null) {
+            resize(maximumWeight, true);
+        }
+        this.maximumWeight = maximumWeight;
+    }
+
+    Long getMaximumWeight() {
+        return this.maximumWeight;
+    }
+
+    private void resize(Long maximum, boolean weighted) {
+        Assert.notNull(maximum, "maximum cannot be removed once initialized");
+        Assert.isTrue(maximum >= 0, "maximum cannot be negative");
+        Policy.Eviction<String, Session> eviction = this.sessions.policy().eviction()
+            .filter((candidate) -> candidate.isWeighted() == weighted)
+            .orElseThrow(() -> new IllegalStateException(
+                "maximum " + (weighted ? "weight" : "size") + " can only be changed if set on initialization"));
+        eviction.setMaximum(maximum);
+        this.sessions.cleanUp();
+    }
+
+    /**
+     * Sets a file used to persist the peak number of stored sessions when the repository
+     * is destroyed. On the next start, if no initial capacity is set, the cache is
+     * pre-sized from the persisted peak, which avoids repeated resizing during the first
+     * minutes after a deployment. The default is {@code null}.
+     *
+     * @param sizingHintFile the file where the peak number of sessions is persisted
+     * @see #setInitialCapacity(Integer)
+     */
+    public void setSizingHintFile(Path sizingHintFile) {
+        this.peakSessionCount = (sizingHintFile != null) ? new PeakSessionCount(sizingHintFile) : null;
+    }
+
+    /**
+     * Sets whether the cache is warmed up on initialization, so that its lazily allocated
+     * structures are ready before the first request. The default is {@code false}.
+     *
+     * @param warmUp whether to warm up the cache
+     */
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * Sets whether the cache records statistics, available through {@link #getStats()}.
+     * The default is {@code false}.
+     *
+     * @param recordStats whether to record statistics
+     */
+    public void setRecordStats(boolean recordStats) {
+        this.recordStats = recordStats;
+    }
+
+    /**
+     * Sets the names of the attributes that can be used as index names with
+     * {@link #findByIndexNameAndIndexValue(String, String)}, in addition to
+     * {@link #PRINCIPAL_NAME_INDEX_NAME}. Sessions match when the value of the attribute
+     * equals the index value.
+     *
+     * @param indexedAttributeNames the names of the indexed attributes. Cannot be null.
+     */
+    public void setIndexedAttributeNames(Collection<String> indexedAttributeNames) {
+        Assert.notNull(indexedAttributeNames, "indexedAttributeNames cannot be null");
+        this.indexedAttributeNames = Set.copyOf(indexedAttributeNames);
+    }
+
+    /**
+     * Get the statistics of the cache. Statistics are only recorded if enabled with
+     * {@link #setRecordStats(boolean)}.
+     *
+     * @return the statistics of the cache
+     */
+    public CacheStats getStats() {
+        return this.sessions.stats();
+    }
+
+    /**
+     * Get the approximate number of stored sessions.
+     *
+     * @return the approximate number of stored sessions
+     */
+    public long getSessionCount() {
+        return this.sessions.estimatedSize();
+    }
+
+    /**
+     * Perform the pending maintenance of the cache, removing the expired sessions and
+     * publishing their events.
+     */
+    public void cleanUp() {
+        this.sessions.cleanUp();
+    }
+
+    /**
+     * Expire the sessions that have been inactive for at least the given duration, as if
+     * they had reached their maximum inactive interval, for instance to free memory during
+     * an incident. Expired sessions publish a {@link CaffeineSessionExpiredEvent}.
+     *
+     * @param inactiveInterval the minimum inactive interval of the sessions to expire.
+     *                         Cannot be null.
+     * @return the number of expired sessions
+     */
+    public int expireInactiveSessions(Duration inactiveInterval) {
+        Assert.notNull(inactiveInterval, "inactiveInterval cannot be null");
+        Instant threshold = this.clock.instant().minus(inactiveInterval);
+        int expired = 0;
+        Policy.VarExpiration<String, Session> expiration = this.sessions.policy().expireVariably().orElseThrow();
+        for (Map.Entry<String, Session> entry : this.sessions.asMap().entrySet()) {
+            if (!entry.getKey().startsWith(WARM_UP_KEY_PREFIX) && !entry.getValue().getLastAccessedTime().isAfter(threshold)) {
+                expiration.setExpiresAfter(entry.getKey(), Duration.ZERO);
+                expired++;
+            }
+        }
+        this.sessions.cleanUp();
+        return expired;
+    }
+
+    long getPendingTaskCount() {
+        return this.pendingTasks.sum();
+    }
+
+    int getPendingExpiredEventCount() {
+        return this.pendingExpiredEvents.size();
+    }
+
+    /**
+     * Set whether the storage of new sessions is deferred until they hold at least one
+     * attribute, or are explicitly marked as persistent with
+     * {@link CaffeineSession#markPersistent()}. Sessions that are never stored do not
+     * publish a {@link SessionCreatedEvent}. The default is {@code false}.
+     *
+     * @param lazySessionCreation whether to defer the storage of new sessions
+     */
+    public void setLazySessionCreation(boolean lazySessionCreation) {
+        this.lazySessionCreation = lazySessionCreation;
+    }
+
+    /**
+     * Set whether sessions are stored in a compact form, that keeps timestamps as
+     * primitives and attributes in an array, instead of as {@link MapSession}s. This
+     * reduces the heap used by each stored session, at the cost of converting sessions
+     * when they are loaded and saved. The default is {@code false}.
+     *
+     * @param compactStorage whether to store sessions in a compact form
+     */
+    public void setCompactStorage(boolean compactStorage) {
+        this.compactStorage = compactStorage;
+    }
+
+    /**
+     * Set the idle time after which the attributes of a stored session are serialized and
+     * compressed, to reduce the heap held by sessions that are not in use. A background
+     * thread, shared by all repositories, looks for such sessions at a quarter of the
+     * threshold, between 1 second and 1 minute, and pauses between batches so that it
+     * never uses more than a fifth of a processor. Compressed sessions are inflated when loaded and stored uncompressed
+     * again when saved, while the principal name and the indexed attributes are kept
+     * uncompressed. Sessions holding an attribute that cannot be serialized are not
+     * compressed. The default is {@code null}, meaning sessions are never compressed.
+     *
+     * @param coldSessionThreshold the idle time after which sessions are compressed
+     */
+    public void setColdSessionThreshold(Duration coldSessionThreshold) {
+        Assert.isTrue(coldSessionThreshold == null || (!coldSessionThreshold.isNegative() && !coldSessionThreshold.isZero()),
+            "coldSessionThreshold must be positive");
+        this.coldSessionThreshold = coldSessionThreshold;
+    }
+
+    /**
+     * Set whether attribute names, principal names and the values of indexed attributes
+     * are deduplicated when sessions are stored, so that sessions share a single instance
+     * of equal strings. Deduplicated strings are weakly referenced, and their number is
+     * bounded. The default is {@code false}.
+     *
+     * @param stringDeduplication whether to deduplicate strings of stored sessions
+     * @see #setIndexedAttributeNames(Collection)
+     */
+    public void setStringDeduplication(boolean stringDeduplication) {
+        this.interner = stringDeduplication ? new WeakInterner(MAXIMUM_INTERNED_STRINGS) : null;
+    }
+
+    /**
+     * Set the maximum number of sessions of a single principal. When a session is saved
+     * for a principal that already has that many sessions, the least recently accessed
+     * of its other sessions is deleted. The limit is enforced atomically when the
+     * principal index is updated, and that index is also used to find sessions by
+     * principal name. The default is {@code null}, meaning no limit.
+     *
+     * @param maximumSessionsPerPrincipal the maximum number of sessions per principal
+     */
+    public void setMaximumSessionsPerPrincipal(Integer maximumSessionsPerPrincipal) {
+        Assert.isTrue(maximumSessionsPerPrincipal == null || maximumSessionsPerPrincipal > 0,
+            "maximumSessionsPerPrincipal must be positive");
+        this.maximumSessionsPerPrincipal = maximumSessionsPerPrincipal;
+    }
+
+    /**
+     * Set how attribute writes are detected as changes. With
+     * {@link AttributeChangeDetection#IDENTITY} or {@link AttributeChangeDetection#EQUALITY},
+     * writing back an unchanged value does not mark the session as changed, and with
+     * {@link #setCompactStorage(boolean) compact storage}, a save that only updates the
+     * last accessed time refreshes the stored session in place instead of copying it into
+     * the cache. The default is
+     * {@link AttributeChangeDetection#ALWAYS}.
+     *
+     * @param attributeChangeDetection the {@link AttributeChangeDetection} to use. Cannot
+     *                                 be null.
+     */
+    public void setAttributeChangeDetection(AttributeChangeDetection attributeChangeDetection) {
+        Assert.notNull(attributeChangeDetection, "attributeChangeDetection cannot be null");
+        this.attributeChangeDetection = attributeChangeDetection;
+    }
+
+    /**
+     * Set the {@link SessionAdmissionController} used to limit the rate at which new
+     * sessions are stored. New sessions that are not admitted are not stored, and do not
+     * publish a {@link SessionCreatedEvent}. The default is {@code null}, meaning all new
+     * sessions are stored.
+     *
+     * @param admissionController the {@link SessionAdmissionController} to use
+     */
+    public void setAdmissionController(SessionAdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    /**
+     * Get the number of new sessions that were not stored because they were rejected by
+     * the {@link SessionAdmissionController}.
+     *
+     * @return the number of rejected new sessions, or 0 if no admission controller is set
+     */
+    public long getRejectedSessionCount() {
+        return (this.admissionController != null) ? this.admissionController.getRejectedCount() : 0;
+    }
+
+    /**
+     * Set whether expired and evicted sessions are published as lightweight
+     * {@link CaffeineSessionExpiredEvent}s. The session carried by such events only holds
+     * the id, the timestamps, the principal name and the attributes selected with
+     * {@link #setExpiredEventAttributeNames(Collection)}, so the rest of the expired
+     * session can be garbage collected before the events are delivered. Events are
+     * queued and delivered in batches on the executor. The default is {@code false}.
+     *
+     * @param lightweightExpiredEvents whether to publish lightweight expired events
+     */
+    public void setLightweightExpiredEvents(boolean lightweightExpiredEvents) {
+        this.lightweightExpiredEvents = lightweightExpiredEvents;
+    }
+
+    /**
+     * Set the names of the attributes kept in lightweight expired events. The default is
+     * an empty set.
+     *
+     * @param expiredEventAttributeNames the names of the attributes to keep. Cannot be
+     *                                   null.
+     * @see #setLightweightExpiredEvents(boolean)
+     */
+    public void setExpiredEventAttributeNames(Collection<String> expiredEventAttributeNames) {
+        Assert.notNull(expiredEventAttributeNames, "expiredEventAttributeNames cannot be null");
+        this.expiredEventAttributeNames = Set.copyOf(expiredEventAttributeNames);
+    }
+
+    /**
+     * Set the {@link MemoryPressureController} used to shorten the idle timeout of
+     * anonymous sessions while memory is under pressure. Stored sessions get their normal
+     * idle timeout back once the pressure clears, and the repository stops listening to
+     * the controller when destroyed. The default is {@code null}, meaning idle timeouts
+     * are never adjusted.
+     *
+     * @param memoryPressureController the {@link MemoryPressureController} to use
+     */
+    public void setMemoryPressureController(MemoryPressureController memoryPressureController) {
+        this.memoryPressureController = memoryPressureController;
+    }
+
+    /**
+     * Shorten the idle timeout of the stored anonymous sessions when memory comes under
+     * pressure, and give them their normal idle timeout back when it clears. The state is
+     * read when the task runs, so that the last task applies the latest state.
+     */
+    private void onMemoryPressureChanged() {
+        executor().execute(() -> {
+            boolean underPressure = this.memoryPressureController.isUnderPressure();
+            this.sessions.policy().expireVariably().ifPresent((expiration) -> {
+                Instant now = this.clock.instant();
+                this.sessions.asMap().forEach((id, session) -> {
+                    Duration inactive = session.getMaxInactiveInterval();
+                    if (inactive.isNegative() || !isAnonymous(session) || id.startsWith(WARM_UP_KEY_PREFIX)) {
+                        return;
+                    }
+                    Duration remaining = remainingTime(session, underPressure ? scaled(inactive) : inactive, now);
+                    expiration.getExpiresAfter(id)
+                        .filter((current) -> underPressure ? remaining.compareTo(current) < 0 : remaining.compareTo(current) > 0)
+                        .ifPresent((current) -> expiration.setExpiresAfter(id, remaining));
+                });
+            });
+            this.sessions.cleanUp();
+        });
+    }
+
+    /**
+     * The time left before a stored session expires, given its idle timeout and its
+     * maximum lifetime.
+     */
+    private Duration remainingTime(Session session, Duration inactive, Instant now) {
+        Instant expiresAt = session.getLastAccessedTime().plus(inactive);
+        if (this.maxSessionLifetime != null) {
+            Instant endOfLife = session.getCreationTime().plus(this.maxSessionLifetime);
+            expiresAt = endOfLife.isBefore(expiresAt) ? endOfLife : expiresAt;
+        }
+        Duration remaining = Duration.between(now, expiresAt);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    private static ScheduledThreadPoolExecutor newColdSessionSweeper() {
+        ScheduledThreadPoolExecutor sweeper = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+            Thread thread = new Thread(runnable, "caffeine-session-cold-sweeper");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        sweeper.setRemoveOnCancelPolicy(true);
+        sweeper.setKeepAliveTime(1, TimeUnit.MINUTES);
+        sweeper.allowCoreThreadTimeOut(true);
+        return sweeper;
+    }
+
+    private void startColdSessionSweeper() {
+        // the class loader of the application, whatever the thread inflating sessions
+        this.coldSessionClassLoader = ClassUtils.getDefaultClassLoader();
+        long period = Math.min(Math.max(this.coldSessionThreshold.toMillis() / 4, 1000), 60_000);
+        this.coldSessionSweep = coldSessionSweeper.scheduleWithFixedDelay(() -> compressColdSessions(true), period,
+            period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Compress the attributes of the stored sessions that have been idle for longer than
+     * the cold session threshold.
+     *
+     * @param throttled whether to pause between batches of sessions
+     * @return the number of compressed sessions
+     */
+    int compressColdSessions(boolean throttled) {
+        Instant threshold = this.clock.instant().minus(this.coldSessionThreshold);
+        Deflater deflater = new Deflater();
+        int compressed = 0;
+        int visited = 0;
+        long batchStart = System.nanoTime();
+        try {
+            for (Map.Entry<String, Session> entry : this.sessions.asMap().entrySet()) {
+                if (throttled && ++visited % COLD_SESSION_BATCH_SIZE == 0) {
+                    TimeUnit.NANOSECONDS.sleep((System.nanoTime() - batchStart) * COLD_SESSION_PAUSE_RATIO);
+                    batchStart = System.nanoTime();
+                }
+                Session session = entry.getValue();
+                if (session instanceof ColdSession || entry.getKey().startsWith(WARM_UP_KEY_PREFIX)
+                    || session.getLastAccessedTime().isAfter(threshold)) {
+                    continue;
+                }
+                if (compressColdSession(entry.getKey(), session, threshold, deflater)) {
+                    compressed++;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deflater.end();
+        }
+        return compressed;
+    }
+
+    private boolean compressColdSession(String id, Session session, Instant threshold, Deflater deflater) {
+        ColdSession cold;
+        try {
+            cold = ColdSession.compress(session, this::isIndexed, deflater, this.coldSessionClassLoader,
+                this.clock);
+        } catch (IOException | RuntimeException ex) {
+            logger.debug("Could not compress the attributes of an idle session, it is kept uncompressed", ex);
+            return false;
+        }
+        if (cold == null) {
+            return false;
+        }
+        // only if the session was neither saved nor touched in the meantime
+        return this.sessions.asMap().computeIfPresent(id, (key, current) ->
+            (current == session && !current.getLastAccessedTime().isAfter(threshold)) ? cold : current) == cold;
+    }
+
+    private Executor executor() {
+        if (this.eventDispatchMode == EventDispatchMode.SYNCHRONOUS) {
+            return Runnable::run;
+        }
+        if (this.instrumentedExecutor != null) {
+            return this.instrumentedExecutor;
+        }
+        return (this.executor != null) ? this.executor : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Wrap an executor to count the tasks submitted and not run yet, for the
+     * {@link FlightRecorderEvents.RemovalBacklog} event.
+     */
+    private Executor countPendingTasks(Executor executor) {
+        return (task) -> {
+            this.pendingTasks.increment();
+            try {
+                executor.execute(() -> {
+                    this.pendingTasks.decrement();
+                    task.run();
+                });
+            } catch (RuntimeException ex) {
+                this.pendingTasks.decrement();
+                throw ex;
+            }
+        };
+    }
+
+    void recordRemovalBacklog() {
+        FlightRecorderEvents.RemovalBacklog event = new FlightRecorderEvents.RemovalBacklog();
+        event.pendingTasks = getPendingTaskCount();
+        event.pendingExpiredEvents = getPendingExpiredEventCount();
+        event.storedSessions = this.sessions.estimatedSize();
+        event.commit();
+    }
+
+    private boolean isAnonymous(Session session) {
+        return session.getAttribute(PRINCIPAL_NAME_ATTRIBUTE) == null;
+    }
+
+    private Duration scaled(Duration inactive) {
+        return Duration.ofNanos((long) (inactive.toNanos() * this.memoryPressureController.getIdleTimeoutScale()));
+    }
+
+    private void removalListener(String key, Session session, RemovalCause cause) {
+        if (session != null && !key.startsWith(WARM_UP_KEY_PREFIX)) {
+            unindexPrincipal(session);
             switch (cause) {
                 case EXPLICIT:
-                    eventPublisher.publishEvent(new SessionDeletedEvent(this, session));
+                    RenameMark mark = this.renameMarks.remove(key);
+                    Session deleted = (mark != null) ? mark.listened(session) : session;
+                    if (deleted != null) {
+                        publishDeleted(deleted);
+                    }
                     break;
                 case REPLACED:
                     break;
-                case COLLECTED:
                 case EXPIRED:
+                case COLLECTED:
                 case SIZE:
-                    eventPublisher.publishEvent(new SessionExpiredEvent(this, session));
+                    FlightRecorderEvents.lifecycle("expired", cause.name());
+                    if (this.eventListeners.expired()) {
+                        this.eventPublisher.publishEvent(
+                            new CaffeineSessionExpiredEvent(this, published(session), expiredReason(session, cause)));
+                    }
                     break;
             }
         }
     }
 
+    /**
+     * Called synchronously when a session is evicted, in lightweight expired events mode.
+     * Only a compact copy of the session is retained until the event is delivered.
+     */
+    private void evictionListener(String key, Session session, RemovalCause cause) {
+        if (session != null && !key.startsWith(WARM_UP_KEY_PREFIX)) {
+            unindexPrincipal(session);
+            FlightRecorderEvents.lifecycle("expired", cause.name());
+            if (!this.eventListeners.expired()) {
+                return;
+            }
+            this.pendingExpiredEvents.add(
+                new CaffeineSessionExpiredEvent(this, compact(session), expiredReason(session, cause)));
+            if (this.drainingExpiredEvents.compareAndSet(false, true)) {
+                executor().execute(this::drainExpiredEvents);
+            }
+        }
+    }
+
+    private void drainExpiredEvents() {
+        do {
+            CaffeineSessionExpiredEvent event;
+            while ((event = this.pendingExpiredEvents.poll()) != null) {
+                this.eventPublisher.publishEvent(event);
+            }
+            this.drainingExpiredEvents.set(false);
+        } while (!this.pendingExpiredEvents.isEmpty() && this.drainingExpiredEvents.compareAndSet(false, true));
+    }
+
+    private MapSession compact(Session session) {
+        MapSession compact = new MapSession(session.getId());
+        compact.setCreationTime(session.getCreationTime());
+        compact.setLastAccessedTime(session.getLastAccessedTime());
+        compact.setMaxInactiveInterval(session.getMaxInactiveInterval());
+        copyAttribute(session, compact, PRINCIPAL_NAME_ATTRIBUTE);
+        copyAttribute(session, compact, FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME);
+        for (String attributeName : this.expiredEventAttributeNames) {
+            copyAttribute(session, compact, attributeName);
+        }
+        return compact;
+    }
+
+    private static void copyAttribute(Session source, Session target, String attributeName) {
+        Object value = source.getAttribute(attributeName);
+        if (value != null) {
+            target.setAttribute(attributeName, value);
+        }
+    }
+
+    private CaffeineSessionExpiredEvent.Reason expiredReason(Session session, RemovalCause cause) {
+        if (cause != RemovalCause.EXPIRED) {
+            return CaffeineSessionExpiredEvent.Reason.EVICTION;
+        }
+        return hasReachedMaxLifetime(session)
+            ? CaffeineSessionExpiredEvent.Reason.MAX_LIFETIME
+            : CaffeineSessionExpiredEvent.Reason.INACTIVITY;
+    }
+
+    /**
+     * Compute the time in nanoseconds after which a session expires, following a write: the
+     * lowest of its maximum inactive interval, scaled down for anonymous sessions under
+     * memory pressure, and the remaining time before it reaches its maximum lifetime.
+     */
+    private long expiresAfter(Session session) {
+        long inactive = session.getMaxInactiveInterval().toNanos();
+        if (inactive > 0 && this.memoryPressureController != null && this.memoryPressureController.isUnderPressure()
+            && isAnonymous(session)) {
+            inactive = (long) (inactive * this.memoryPressureController.getIdleTimeoutScale());
+        }
+        if (this.maxSessionLifetime == null) {
+            return inactive;
+        }
+        Instant expiresAt = session.getCreationTime().plus(this.maxSessionLifetime);
+        long remaining = Math.max(0, Duration.between(this.clock.instant(), expiresAt).toNanos());
+        return (inactive < 0) ? remaining : Math.min(inactive, remaining);
+    }
+
+    private boolean hasReachedMaxLifetime(Session session) {
+        return this.maxSessionLifetime != null
+            && !this.clock.instant().isBefore(session.getCreationTime().plus(this.maxSessionLifetime));
+    }
+
+    private boolean isExpired(Session session) {
+        Duration maxInactiveInterval = session.getMaxInactiveInterval();
+        return !maxInactiveInterval.isNegative()
+            && !this.clock.instant().minus(maxInactiveInterval).isBefore(session.getLastAccessedTime());
+    }
+
     @Override
     public Map<String, CaffeineSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
-        if (!PRINCIPAL_NAME_INDEX_NAME.equals(indexName) || indexValue == null) {
+        FlightRecorderEvents.IndexLookup event = new FlightRecorderEvents.IndexLookup();
+        event.begin();
+        Map<String, CaffeineSession> sessions = doFindByIndexNameAndIndexValue(indexName, indexValue);
+        event.end();
+        if (event.shouldCommit()) {
+            event.indexName = indexName;
+            event.resultSize = sessions.size();
+            event.commit();
+        }
+        return sessions;
+    }
+
+    private Map<String, CaffeineSession> doFindByIndexNameAndIndexValue(String indexName, String indexValue) {
+        String attributeName;
+        if (PRINCIPAL_NAME_INDEX_NAME.equals(indexName)) {
+            attributeName = PRINCIPAL_NAME_ATTRIBUTE;
+        } else if (this.indexedAttributeNames.contains(indexName)) {
+            attributeName = indexName;
+        } else {
+            return Collections.emptyMap();
+        }
+        if (indexValue == null) {
             return Collections.emptyMap();
         }
-        Collection<MapSession> sessions = this.sessions.asMap().values().stream()
-            .filter(mapSession -> indexValue.equals(mapSession.getAttribute(PRINCIPAL_NAME_ATTRIBUTE))).toList();
+        // stored values are canonical, compare them by identity first
+        String value = (this.interner != null) ? this.interner.canonical(indexValue) : indexValue;
+        Collection<Session> sessions;
+        if (this.maximumSessionsPerPrincipal != null && PRINCIPAL_NAME_INDEX_NAME.equals(indexName)) {
+            sessions = this.principalSessions.getOrDefault(value, Collections.emptySet()).stream()
+                .map((id) -> principalSession(id, value)).filter(Objects::nonNull).toList();
+        } else {
+            sessions = this.sessions.asMap().values().stream()
+                .filter(mapSession -> value.equals(mapSession.getAttribute(attributeName))).toList();
+        }
         Map<String, CaffeineSession> sessionMap = new HashMap<>(sessions.size());
-        for (MapSession session : sessions) {
+        for (Session session : sessions) {
             sessionMap.put(session.getId(), new CaffeineSession(session, false));
         }
         return sessionMap;
     }
 
+    /**
+     * Stream a {@link SessionSummary summary} of each stored session, in no particular
+     * order. The stream is weakly consistent: it reflects the sessions stored at some point
+     * during its traversal, and does not copy the stored sessions.
+     *
+     * @return a stream of session summaries
+     */
+    public Stream<SessionSummary> streamSessions() {
+        return SessionQueries.stream(this.sessions);
+    }
+
+    /**
+     * Find a page of stored sessions. Queries scan all stored sessions, without blocking
+     * the cache's maintenance, and order them by last access or expiration time.
+     *
+     * @param query the query
+     * @return a page of session summaries
+     * @throws IllegalArgumentException if the cursor of the query is invalid
+     */
+    public SessionPage findSessions(SessionQuery query) {
+        Assert.notNull(query, "query cannot be null");
+        return SessionQueries.find(this.sessions, query, this.clock.instant());
+    }
+
     @Override
     public CaffeineSession createSession() {
-        MapSession cached = new MapSession();
+        MapSession cached = new MapSession(this.sessionIdGenerator);
+        Instant now = this.clock.instant();
+        cached.setCreationTime(now);
+        cached.setLastAccessedTime(now);
         if (this.defaultMaxInactiveInterval != null) {
             cached.setMaxInactiveInterval(Duration.ofSeconds(this.defaultMaxInactiveInterval));
         }
@@ -195,28 +1127,254 @@ public class CaffeineIndexedSessionRepository
 
     @Override
     public void save(CaffeineSession session) {
+        FlightRecorderEvents.SessionSave event = new FlightRecorderEvents.SessionSave();
+        event.begin();
+        String operation = doSave(session);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.copiedAttributes = switch (operation) {
+                case "create", "rename" -> this.compactStorage ? session.getAttributeNames().size() : 0;
+                case "update" -> session.getAttributeNames().size();
+                default -> 0;
+            };
+            event.commit();
+        }
+    }
+
+    private String doSave(CaffeineSession session) {
+        String operation = "skip";
         if (session.isNew) {
-            this.sessions.put(session.getId(), session.getDelegate());
-            eventPublisher.publishEvent(new SessionCreatedEvent(this, session));
+            if (this.lazySessionCreation && !session.persistent && session.getAttributeNames().isEmpty()) {
+                return operation;
+            }
+            if (this.admissionController != null && !this.admissionController.tryAdmit(session)) {
+                // served as a transient session for the current request only
+                return operation;
+            }
+            this.sessions.put(session.getId(), store(session));
+            indexPrincipal(session.getDelegate());
+            if (this.peakSessionCount != null) {
+                this.peakSessionCount.record(this.sessions.estimatedSize());
+            }
+            FlightRecorderEvents.lifecycle("created", null);
+            if (this.eventListeners.created()) {
+                publishEvent(new SessionCreatedEvent(this, session));
+            }
+            operation = "create";
         } else if (session.sessionIdChanged) {
-            this.sessions.invalidate(session.originalId);
-            session.originalId = session.getId();
-            this.sessions.put(session.getId(), new MapSession(session.getDelegate()));
+            rename(session);
+            operation = "rename";
         } else if (session.hasChanges()) {
-            if (this.sessions.getIfPresent(session.getId()) != null) {
-                this.sessions.put(session.getId(), new MapSession(session.getDelegate()));
+            boolean touched = session.hasOnlyLastAccessedTimeChanged()
+                && this.attributeChangeDetection != AttributeChangeDetection.ALWAYS;
+            // atomically, so that a session deleted concurrently is not stored again
+            Session stored = this.sessions.asMap().computeIfPresent(session.getId(), (id, current) ->
+                touched && touch(current, session.getLastAccessedTime())
+                    ? current
+                    : toStored(new MapSession(session.getDelegate())));
+            if (stored != null) {
+                operation = touched ? "touch" : "update";
+                if (session.attributesChanged) {
+                    indexPrincipal(session.getDelegate());
+                }
             }
         }
         session.clearChangeFlags();
+        return operation;
+    }
+
+    private void publishEvent(ApplicationEvent event) {
+        if (this.eventDispatchMode == EventDispatchMode.ASYNCHRONOUS) {
+            executor().execute(() -> this.eventPublisher.publishEvent(event));
+        } else {
+            this.eventPublisher.publishEvent(event);
+        }
+    }
+
+    /**
+     * Move a session to its new id. The session is stored under its new id before being
+     * removed from its original id, so that it resolves under one of them at any time, and
+     * its original id is removed without publishing a {@link SessionDeletedEvent}.
+     */
+    private void rename(CaffeineSession session) {
+        String originalId = session.originalId;
+        Session stored = store(session);
+        this.sessions.put(session.getId(), stored);
+        if (removeRenamed(originalId) == null) {
+            // deleted concurrently, do not bring it back under its new id
+            removeRenamed(session.getId());
+            return;
+        }
+        session.originalId = session.getId();
+        indexPrincipal(session.getDelegate());
+        if (this.eventListeners.idChanged()) {
+            publishEvent(new SessionIdChangedEvent(this, session, originalId));
+        }
+    }
+
+    /**
+     * Remove the entry of a renamed session, without publishing a
+     * {@link SessionDeletedEvent}.
+     *
+     * @return the removed session, or {@code null} if it was already removed
+     */
+    private Session removeRenamed(String id) {
+        if (this.lightweightExpiredEvents) {
+            // no removal listener in this mode
+            return this.sessions.asMap().remove(id);
+        }
+        RenameMark mark = new RenameMark();
+        this.renameMarks.put(id, mark);
+        Session removed = this.sessions.asMap().remove(id);
+        if (removed == null && this.renameMarks.remove(id, mark)) {
+            // already removed, and its removal listener did not see the mark
+            return null;
+        }
+        // the removal listener took the mark, for this removal or a concurrent deletion
+        Session deleted = mark.resolved(removed != null);
+        if (deleted != null) {
+            publishDeleted(deleted);
+        }
+        return removed;
+    }
+
+    private void publishDeleted(Session session) {
+        FlightRecorderEvents.lifecycle("deleted", RemovalCause.EXPLICIT.name());
+        if (this.eventListeners.deleted()) {
+            this.eventPublisher.publishEvent(new SessionDeletedEvent(this, published(session)));
+        }
+    }
+
+    /**
+     * Get the session to publish in an event: a cold session is read-only, and is
+     * inflated into a regular session first.
+     */
+    private static Session published(Session session) {
+        return (session instanceof ColdSession cold) ? cold.rehydrate() : session;
+    }
+
+    /**
+     * Get the session to store for a new or renamed session. Its delegate is stored
+     * as is, without copying its attributes, and is copied on its next change.
+     */
+    private Session store(CaffeineSession session) {
+        Session stored = toStored(session.getDelegate());
+        session.delegateStored = (stored == session.getDelegate());
+        return stored;
+    }
+
+    /**
+     * Convert a session to the representation stored in the cache. The stored session is
+     * converted back to a {@link MapSession} when loaded.
+     */
+    private Session toStored(MapSession session) {
+        if (this.interner != null) {
+            deduplicateStrings(session);
+        }
+        return this.compactStorage ? CompactSession.from(session, this.clock) : session;
+    }
+
+    private void deduplicateStrings(MapSession session) {
+        for (String attributeName : List.copyOf(session.getAttributeNames())) {
+            String canonicalName = this.interner.intern(attributeName);
+            Object value = session.getAttribute(attributeName);
+            Object canonicalValue = (value instanceof String string && isIndexed(canonicalName))
+                ? this.interner.intern(string)
+                : value;
+            if (canonicalName != attributeName) {
+                // a map keeps its existing key when putting an equal one
+                session.removeAttribute(attributeName);
+                session.setAttribute(canonicalName, canonicalValue);
+            } else if (canonicalValue != value) {
+                session.setAttribute(canonicalName, canonicalValue);
+            }
+        }
+    }
+
+    private boolean isIndexed(String attributeName) {
+        return PRINCIPAL_NAME_ATTRIBUTE.equals(attributeName) || PRINCIPAL_NAME_INDEX_NAME.equals(attributeName)
+            || this.indexedAttributeNames.contains(attributeName);
+    }
+
+    /**
+     * Add a saved session to the index of its principal, and delete the least recently
+     * accessed other sessions of the principal beyond the maximum. The decision is taken
+     * while holding the index entry of the principal, so that concurrent logins of the
+     * same principal cannot exceed the maximum.
+     */
+    private void indexPrincipal(Session session) {
+        String principal = session.getAttribute(PRINCIPAL_NAME_ATTRIBUTE);
+        if (this.maximumSessionsPerPrincipal == null || principal == null) {
+            return;
+        }
+        List<String> excess = new ArrayList<>();
+        this.principalSessions.compute(principal, (key, ids) -> {
+            Set<String> indexed = (ids != null) ? ids : ConcurrentHashMap.newKeySet();
+            indexed.add(session.getId());
+            indexed.removeIf((id) -> principalSession(id, key) == null);
+            while (indexed.size() > this.maximumSessionsPerPrincipal) {
+                String leastRecentlyAccessed = indexed.stream()
+                    .filter((id) -> !id.equals(session.getId()))
+                    .min(Comparator.comparing((String id) -> lastAccessedTime(principalSession(id, key))))
+                    .orElseThrow();
+                indexed.remove(leastRecentlyAccessed);
+                excess.add(leastRecentlyAccessed);
+            }
+            return indexed;
+        });
+        excess.forEach(this::deleteById);
+    }
+
+    private void unindexPrincipal(Session session) {
+        String principal = session.getAttribute(PRINCIPAL_NAME_ATTRIBUTE);
+        if (this.maximumSessionsPerPrincipal == null || principal == null) {
+            return;
+        }
+        this.principalSessions.computeIfPresent(principal, (key, ids) -> {
+            // the session may still be stored under the same principal if it was replaced
+            ids.removeIf((id) -> principalSession(id, key) == null);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Get a stored session if it still belongs to the principal, without recording a
+     * cache access.
+     */
+    private Session principalSession(String id, String principal) {
+        Session session = this.sessions.asMap().get(id);
+        return (session != null && principal.equals(session.getAttribute(PRINCIPAL_NAME_ATTRIBUTE))) ? session : null;
+    }
+
+    private static Instant lastAccessedTime(Session session) {
+        return (session != null) ? session.getLastAccessedTime() : Instant.MIN;
+    }
+
+    /**
+     * Refresh the last accessed time of a stored session in place, instead of replacing it
+     * with a copy. Its expiration is then updated by the cache, as for any write. Only a
+     * {@link CompactSession} is refreshed in place, as its times are safely read by
+     * concurrent loads: a stored {@link MapSession} is replaced with a copy, and a cold
+     * session in use again by a regular copy.
+     *
+     * @return whether the session was refreshed in place
+     */
+    private boolean touch(Session stored, Instant lastAccessedTime) {
+        if (this.attributeChangeDetection == AttributeChangeDetection.ALWAYS || !(stored instanceof CompactSession)) {
+            return false;
+        }
+        stored.setLastAccessedTime(lastAccessedTime);
+        return true;
     }
 
     @Override
     public CaffeineSession findById(String id) {
-        MapSession saved = this.sessions.getIfPresent(id);
+        Session saved = this.sessions.getIfPresent(id);
         if (saved == null) {
             return null;
         }
-        if (saved.isExpired()) {
+        if (isExpired(saved) || hasReachedMaxLifetime(saved)) {
             deleteById(saved.getId());
             return null;
         }
@@ -225,19 +1383,34 @@ public class CaffeineIndexedSessionRepository
 
     @Override
     public void deleteById(String id) {
-        this.sessions.invalidate(id);
+        if (this.lightweightExpiredEvents) {
+            // no removal listener in this mode, publish the deletion here
+            Session removed = this.sessions.asMap().remove(id);
+            if (removed != null) {
+                unindexPrincipal(removed);
+                FlightRecorderEvents.lifecycle("deleted", RemovalCause.EXPLICIT.name());
+                if (this.eventListeners.deleted()) {
+                    executor().execute(
+                        () -> this.eventPublisher.publishEvent(new SessionDeletedEvent(this, published(removed))));
+                }
+            }
+        } else {
+            this.sessions.invalidate(id);
+        }
     }
 
     /**
      * A custom implementation of {@link Session} that uses a {@link MapSession} as the
      * basis for its mapping. It keeps track if changes have been made since last save.
      */
-    final class CaffeineSession implements Session {
+    public final class CaffeineSession implements Session {
 
         private MapSession delegate;
 
         private boolean isNew;
 
+        private boolean persistent;
+
         private boolean sessionIdChanged;
 
         private boolean lastAccessedTimeChanged;
@@ -248,8 +1421,10 @@ public class CaffeineIndexedSessionRepository
 
         private String originalId;
 
-        CaffeineSession(MapSession cached, boolean isNew) {
-            this.delegate = new MapSession(cached);
+        private boolean delegateStored;
+
+        CaffeineSession(Session cached, boolean isNew) {
+            this.delegate = (cached instanceof ColdSession cold) ? cold.rehydrate() : new MapSession(cached);
             this.isNew = isNew;
             this.originalId = cached.getId();
         }
@@ -261,8 +1436,8 @@ public class CaffeineIndexedSessionRepository
 
         @Override
         public String changeSessionId() {
-            this.delegate = new MapSession(this.delegate);
-            String newSessionId = this.delegate.changeSessionId();
+            String newSessionId = CaffeineIndexedSessionRepository.this.sessionIdGenerator.generate();
+            writableDelegate().setId(newSessionId);
             this.sessionIdChanged = true;
             return newSessionId;
         }
@@ -279,20 +1454,46 @@ public class CaffeineIndexedSessionRepository
 
         @Override
         public void setAttribute(String attributeName, Object attributeValue) {
-            this.delegate.setAttribute(attributeName, attributeValue);
-            this.attributesChanged = true;
+            if (isChange(this.delegate.getAttribute(attributeName), attributeValue)) {
+                writableDelegate().setAttribute(attributeName, attributeValue);
+                this.attributesChanged = true;
+            }
             if (SPRING_SECURITY_CONTEXT.equals(attributeName)) {
-                Map<String, String> indexes = CaffeineIndexedSessionRepository.this.indexResolver
-                    .resolveIndexesFor(this);
-                String principal = (attributeValue != null) ? indexes.get(PRINCIPAL_NAME_INDEX_NAME) : null;
-                this.delegate.setAttribute(PRINCIPAL_NAME_ATTRIBUTE, principal);
+                // the authentication may have been replaced within the same security context
+                String principal = (attributeValue != null) ? resolvePrincipal(attributeValue) : null;
+                if (!Objects.equals(principal, this.delegate.getAttribute(PRINCIPAL_NAME_ATTRIBUTE))) {
+                    writableDelegate().setAttribute(PRINCIPAL_NAME_ATTRIBUTE, principal);
+                    this.attributesChanged = true;
+                }
             }
         }
 
+        private boolean isChange(Object storedValue, Object attributeValue) {
+            return switch (CaffeineIndexedSessionRepository.this.attributeChangeDetection) {
+                case ALWAYS -> true;
+                case IDENTITY -> storedValue != attributeValue;
+                case EQUALITY -> !Objects.equals(storedValue, attributeValue);
+            };
+        }
+
+        private String resolvePrincipal(Object securityContext) {
+            Supplier<String> resolver = () -> CaffeineIndexedSessionRepository.this.indexResolver
+                .resolveIndexesFor(this).get(PRINCIPAL_NAME_INDEX_NAME);
+            if (!CaffeineIndexedSessionRepository.this.memoizePrincipals
+                || this.delegate.getAttribute(PRINCIPAL_NAME_INDEX_NAME) != null) {
+                // a custom resolver may depend on more than the security context, and a
+                // principal name set explicitly takes precedence over the security context
+                return resolver.get();
+            }
+            return CaffeineIndexedSessionRepository.this.resolvedPrincipals.resolve(securityContext, resolver);
+        }
+
         @Override
         public void removeAttribute(String attributeName) {
-            delegate.removeAttribute(attributeName);
-            this.attributesChanged = true;
+            if (isChange(this.delegate.getAttribute(attributeName), null)) {
+                writableDelegate().removeAttribute(attributeName);
+                this.attributesChanged = true;
+            }
         }
 
         @Override
@@ -302,7 +1503,7 @@ public class CaffeineIndexedSessionRepository
 
         @Override
         public void setLastAccessedTime(Instant lastAccessedTime) {
-            this.delegate.setLastAccessedTime(lastAccessedTime);
+            writableDelegate().setLastAccessedTime(lastAccessedTime);
             this.lastAccessedTimeChanged = true;
         }
 
@@ -314,7 +1515,7 @@ public class CaffeineIndexedSessionRepository
         @Override
         public void setMaxInactiveInterval(Duration interval) {
             Assert.notNull(interval, "interval must not be null");
-            this.delegate.setMaxInactiveInterval(interval);
+            writableDelegate().setMaxInactiveInterval(interval);
             this.maxInactiveIntervalChanged = true;
         }
 
@@ -325,13 +1526,43 @@ public class CaffeineIndexedSessionRepository
 
         @Override
         public boolean isExpired() {
-            return delegate.isExpired();
+            return CaffeineIndexedSessionRepository.this.isExpired(this.delegate);
+        }
+
+        /**
+         * Mark this session as persistent, so that it is stored on the next save even if
+         * it holds no attribute when lazy session creation is enabled.
+         *
+         * @see CaffeineIndexedSessionRepository#setLazySessionCreation(boolean)
+         */
+        public void markPersistent() {
+            this.persistent = true;
         }
 
         MapSession getDelegate() {
             return this.delegate;
         }
 
+        /**
+         * Get the delegate to modify, copying it first if it is the stored session, so that
+         * changes are only visible once saved.
+         */
+        private MapSession writableDelegate() {
+            if (this.delegateStored) {
+                this.delegate = new MapSession(this.delegate);
+                this.delegateStored = false;
+            }
+            return this.delegate;
+        }
+
+        CaffeineIndexedSessionRepository getRepository() {
+            return CaffeineIndexedSessionRepository.this;
+        }
+
+        boolean hasOnlyLastAccessedTimeChanged() {
+            return this.lastAccessedTimeChanged && !this.maxInactiveIntervalChanged && !this.attributesChanged;
+        }
+
         boolean hasChanges() {
             return (this.lastAccessedTimeChanged || this.maxInactiveIntervalChanged || this.attributesChanged);
         }
@@ -344,4 +1575,42 @@ public class CaffeineIndexedSessionRepository
             this.attributesChanged = false;
         }
     }
+
+    /**
+     * Marks an id removed by a rename, so that the removal listener does not publish a
+     * {@link SessionDeletedEvent} for it. The rename and the removal listener complete in
+     * any order: the last one tells whether the listener saw a concurrent deletion instead.
+     */
+    private static final class RenameMark {
+
+        private boolean resolved;
+
+        private boolean removedByRename;
+
+        private Session listened;
+
+        /**
+         * Called by the removal listener with the removed session.
+         *
+         * @return the session to publish as deleted, or {@code null}
+         */
+        synchronized Session listened(Session session) {
+            if (this.resolved) {
+                return this.removedByRename ? null : session;
+            }
+            this.listened = session;
+            return null;
+        }
+
+        /**
+         * Called by the rename once its removal completed.
+         *
+         * @return the session to publish as deleted, or {@code null}
+         */
+        synchronized Session resolved(boolean removedByRename) {
+            this.resolved = true;
+            this.removedByRename = removedByRename;
+            return removedByRename ? null : this.listened;
+        }
+    }
 }
@@ -0,0 +1,148 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.export.naming.SelfNaming;
+import org.springframework.util.Assert;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.time.Duration;
+
+/**
+ * Management operations of a {@link CaffeineIndexedSessionRepository}, exported as a JMX
+ * MBean when registered as a bean in a context with JMX export enabled, for instance with
+ * {@code spring.jmx.enabled=true} in Spring Boot.
+ *
+ * <p>
+ * It shows the number of stored sessions, the cache statistics and the backlog of
+ * session events, and lets operators change the limits of the repository at runtime and
+ * expire sessions during incidents, without a redeploy. The partition of a tenant in a
+ * {@link PartitionedCaffeineSessionRepository} is exported with a {@code tenant} key.
+ */
+@ManagedResource(objectName = CaffeineSessionRepositoryManagement.OBJECT_NAME,
+    description = "Spring Session repository backed by Caffeine")
+public class CaffeineSessionRepositoryManagement implements SelfNaming {
+
+    static final String OBJECT_NAME = "com.github.gotson.spring.session.caffeine:type=SessionRepository";
+
+    private final CaffeineIndexedSessionRepository sessionRepository;
+
+    private final String tenant;
+
+    /**
+     * Create a new instance.
+     *
+     * @param sessionRepository the repository to manage. Cannot be null.
+     */
+    public CaffeineSessionRepositoryManagement(CaffeineIndexedSessionRepository sessionRepository) {
+        this(sessionRepository, null);
+    }
+
+    /**
+     * Create a new instance for the partition of a tenant.
+     *
+     * @param sessionRepository the partition to manage. Cannot be null.
+     * @param tenant            the tenant of the partition, or {@code null} if the
+     *                          repository is not partitioned
+     * @see PartitionedCaffeineSessionRepository#addPartitionListener
+     */
+    public CaffeineSessionRepositoryManagement(CaffeineIndexedSessionRepository sessionRepository, String tenant) {
+        Assert.notNull(sessionRepository, "sessionRepository cannot be null");
+        this.sessionRepository = sessionRepository;
+        this.tenant = tenant;
+    }
+
+    @Override
+    public ObjectName getObjectName() throws MalformedObjectNameException {
+        return new ObjectName((this.tenant != null) ? OBJECT_NAME + ",tenant=" + ObjectName.quote(this.tenant) : OBJECT_NAME);
+    }
+
+    @ManagedAttribute(description = "The tenant of the partition, or null if the repository is not partitioned")
+    public String getTenant() {
+        return this.tenant;
+    }
+
+    @ManagedAttribute(description = "The approximate number of stored sessions")
+    public long getSessionCount() {
+        return this.sessionRepository.getSessionCount();
+    }
+
+    @ManagedAttribute(description = "The number of session lookups that found a session, if statistics are recorded")
+    public long getHitCount() {
+        return this.sessionRepository.getStats().hitCount();
+    }
+
+    @ManagedAttribute(description = "The number of session lookups that did not find a session, if statistics are recorded")
+    public long getMissCount() {
+        return this.sessionRepository.getStats().missCount();
+    }
+
+    @ManagedAttribute(description = "The ratio of session lookups that found a session, if statistics are recorded")
+    public double getHitRate() {
+        return this.sessionRepository.getStats().hitRate();
+    }
+
+    @ManagedAttribute(description = "The number of sessions evicted from the cache, if statistics are recorded")
+    public long getEvictionCount() {
+        return this.sessionRepository.getStats().evictionCount();
+    }
+
+    @ManagedAttribute(description = "The number of new sessions not stored because of admission control")
+    public long getRejectedSessionCount() {
+        return this.sessionRepository.getRejectedSessionCount();
+    }
+
+    @ManagedAttribute(description = "The number of removal notifications and session events not delivered yet")
+    public long getPendingTaskCount() {
+        return this.sessionRepository.getPendingTaskCount();
+    }
+
+    @ManagedAttribute(description = "The number of lightweight expired session events not published yet")
+    public int getPendingExpiredEventCount() {
+        return this.sessionRepository.getPendingExpiredEventCount();
+    }
+
+    @ManagedAttribute(description = "The maximum number of sessions, or null if not bounded")
+    public Long getMaximumSize() {
+        return this.sessionRepository.getMaximumSize();
+    }
+
+    @ManagedAttribute(description = "Change the maximum number of sessions, if bounded on initialization")
+    public void setMaximumSize(Long maximumSize) {
+        this.sessionRepository.setMaximumSize(maximumSize);
+    }
+
+    @ManagedAttribute(description = "The maximum weight of sessions, or null if not bounded")
+    public Long getMaximumWeight() {
+        return this.sessionRepository.getMaximumWeight();
+    }
+
+    @ManagedAttribute(description = "Change the maximum weight of sessions, if bounded on initialization")
+    public void setMaximumWeight(Long maximumWeight) {
+        this.sessionRepository.setMaximumWeight(maximumWeight);
+    }
+
+    @ManagedAttribute(description = "The maximum inactive interval in seconds of new sessions")
+    public Integer getDefaultMaxInactiveInterval() {
+        return this.sessionRepository.getDefaultMaxInactiveInterval();
+    }
+
+    @ManagedAttribute(description = "Change the maximum inactive interval in seconds of new sessions")
+    public void setDefaultMaxInactiveInterval(Integer defaultMaxInactiveInterval) {
+        this.sessionRepository.setDefaultMaxInactiveInterval(defaultMaxInactiveInterval);
+    }
+
+    @ManagedOperation(description = "Remove the expired sessions and publish their events")
+    public void cleanUp() {
+        this.sessionRepository.cleanUp();
+    }
+
+    @ManagedOperation(description = "Expire the sessions inactive for at least the given number of seconds")
+    @ManagedOperationParameter(name = "inactiveSeconds", description = "The minimum inactive interval in seconds")
+    public int expireInactiveSessions(long inactiveSeconds) {
+        return this.sessionRepository.expireInactiveSessions(Duration.ofSeconds(inactiveSeconds));
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link RuntimeHintsRegistrar} for the session repository, so that it can run in a
+ * native image.
+ *
+ * <p>
+ * Caffeine specializes each cache for the features it is built with, loading a generated
+ * cache class and node class by name: the classes matching the features the repository
+ * and the {@link SessionAdmissionController} can be configured with are registered, as
+ * well as those of the weak-keyed memoization of resolved principal names. That
+ * memoization reads the authentication of Spring Security contexts reflectively, and the
+ * discovery of session event listeners looks up the servlet {@code HttpSessionListener}
+ * type by name. The attributes of cold sessions are serialized as an array, the types of
+ * the attributes themselves need serialization hints from the application.
+ *
+ * <p>
+ * Registered through {@code META-INF/spring/aot.factories}, and applied by Spring AOT
+ * when processing the application ahead of time.
+ */
+class CaffeineSessionRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final String CAFFEINE_PACKAGE = "com.github.benmanes.caffeine.cache.";
+
+    private static final String SECURITY_CONTEXT_IMPL = "org.springframework.security.core.context.SecurityContextImpl";
+
+    private static final String HTTP_SESSION_LISTENER = "jakarta.servlet.http.HttpSessionListener";
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (String name : caffeineClassNames()) {
+            hints.reflection().registerType(TypeReference.of(CAFFEINE_PACKAGE + name),
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.DECLARED_FIELDS);
+        }
+        hints.reflection().registerTypeIfPresent(classLoader, SECURITY_CONTEXT_IMPL, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.reflection().registerTypeIfPresent(classLoader, HTTP_SESSION_LISTENER);
+        hints.reflection().registerType(CaffeineSessionRepositoryManagement.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.serialization().registerType(TypeReference.of(Object[].class));
+    }
+
+    /**
+     * The simple names of the generated Caffeine classes that can be loaded by the
+     * repository. Cache classes are named after the strength of keys and values, then
+     * optionally a removal listener ({@code L}), statistics ({@code S}), a maximum size
+     * ({@code MS}) or weight ({@code MW}), and the expiration ({@code A} for variable or
+     * after access). Node classes are named after the strength of keys ({@code P} for
+     * strong, {@code F} for weak) and values, the expiration ({@code W} for variable,
+     * {@code A} after access) and the maximum.
+     */
+    static List<String> caffeineClassNames() {
+        List<String> names = new ArrayList<>();
+        for (String listener : new String[] {"", "L"}) {
+            for (String stats : new String[] {"", "S"}) {
+                for (String maximum : new String[] {"", "MS", "MW"}) {
+                    names.add("SS" + listener + stats + maximum + "A");
+                }
+            }
+        }
+        names.addAll(List.of("PSW", "PSWMS", "PSWMW"));
+        // the per-client buckets of the admission controller
+        names.add("PSAMS");
+        // the weak-keyed memoization of resolved principal names
+        names.addAll(List.of("WS", "FS"));
+        return names;
+    }
+}
@@ -0,0 +1,250 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.SoftReference;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A stored session whose attributes are serialized and compressed, once it has been idle
+ * for longer than the {@link CaffeineIndexedSessionRepository#setColdSessionThreshold(Duration)
+ * cold session threshold}.
+ *
+ * <p>
+ * Indexed attributes, such as the principal name, are kept uncompressed so that index
+ * lookups, queries and expiration do not inflate the session. Reading any other attribute
+ * inflates all of them, and the inflated values are softly kept for the following reads,
+ * until the garbage collector needs the memory back. A cold session is
+ * {@link #rehydrate() rehydrated} as a whole when loaded or published in an event. It is
+ * read-only, and is replaced by a regular session when saved. Like a compact session, it
+ * expires according to the clock of the repository.
+ */
+final class ColdSession implements Session {
+
+    private final String id;
+
+    private final long creationTime;
+
+    private final long lastAccessedTime;
+
+    private final long maxInactiveInterval;
+
+    /**
+     * The uncompressed attributes, as alternating names and values.
+     */
+    private final Object[] attributes;
+
+    private final String[] compressedNames;
+
+    private final byte[] compressedValues;
+
+    private final ClassLoader classLoader;
+
+    private final Clock clock;
+
+    private volatile SoftReference<Object[]> inflated;
+
+    private ColdSession(Session session, Object[] attributes, String[] compressedNames, byte[] compressedValues,
+                        ClassLoader classLoader, Clock clock) {
+        this.id = session.getId();
+        this.creationTime = CompactSession.toNanos(session.getCreationTime());
+        this.lastAccessedTime = CompactSession.toNanos(session.getLastAccessedTime());
+        this.maxInactiveInterval = session.getMaxInactiveInterval().toNanos();
+        this.attributes = attributes;
+        this.compressedNames = compressedNames;
+        this.compressedValues = compressedValues;
+        this.classLoader = classLoader;
+        this.clock = clock;
+    }
+
+    /**
+     * Compress the attributes of a session.
+     *
+     * @param session          the session to compress
+     * @param keepUncompressed whether an attribute is kept uncompressed, given its name
+     * @param deflater         the deflater to use, reset before use
+     * @param classLoader      the class loader used to deserialize the attributes
+     * @param clock            the clock of the repository, to check expiration
+     * @return the cold session, or {@code null} if there is no attribute to compress
+     * @throws IOException if an attribute cannot be serialized
+     */
+    static ColdSession compress(Session session, Predicate<String> keepUncompressed, Deflater deflater,
+                                ClassLoader classLoader, Clock clock) throws IOException {
+        List<Object> attributes = new ArrayList<>();
+        List<String> compressedNames = new ArrayList<>();
+        List<Object> compressedValues = new ArrayList<>();
+        for (String attributeName : session.getAttributeNames()) {
+            Object value = session.getAttribute(attributeName);
+            if (keepUncompressed.test(attributeName)) {
+                attributes.add(attributeName);
+                attributes.add(value);
+            } else {
+                compressedNames.add(attributeName);
+                compressedValues.add(value);
+            }
+        }
+        if (compressedNames.isEmpty()) {
+            return null;
+        }
+        deflater.reset();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeObject(compressedValues.toArray());
+        }
+        return new ColdSession(session, attributes.toArray(), compressedNames.toArray(new String[0]),
+            bytes.toByteArray(), classLoader, clock);
+    }
+
+    /**
+     * Inflate this session into a regular session.
+     *
+     * @return a new {@link MapSession} holding all the attributes of this session
+     */
+    MapSession rehydrate() {
+        MapSession session = new MapSession(this.id);
+        session.setCreationTime(getCreationTime());
+        session.setLastAccessedTime(getLastAccessedTime());
+        session.setMaxInactiveInterval(getMaxInactiveInterval());
+        for (int i = 0; i < this.attributes.length; i += 2) {
+            session.setAttribute((String) this.attributes[i], this.attributes[i + 1]);
+        }
+        // the rehydrated session is read instead, the inflated values are not kept
+        Object[] values = inflated();
+        if (values == null) {
+            values = doInflate();
+        }
+        for (int i = 0; i < this.compressedNames.length; i++) {
+            session.setAttribute(this.compressedNames[i], values[i]);
+        }
+        return session;
+    }
+
+    /**
+     * The size of the compressed attributes, in bytes.
+     */
+    int getCompressedSize() {
+        return this.compressedValues.length;
+    }
+
+    private Object[] inflate() {
+        Object[] values = inflated();
+        if (values == null) {
+            values = doInflate();
+            this.inflated = new SoftReference<>(values);
+        }
+        return values;
+    }
+
+    private Object[] inflated() {
+        SoftReference<Object[]> reference = this.inflated;
+        return (reference != null) ? reference.get() : null;
+    }
+
+    private Object[] doInflate() {
+        Inflater inflater = new Inflater();
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(
+            new InflaterInputStream(new ByteArrayInputStream(this.compressedValues), inflater), this.classLoader)) {
+            return (Object[]) in.readObject();
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new IllegalStateException("Could not inflate the attributes of a cold session", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+    @Override
+    public String changeSessionId() {
+        throw new UnsupportedOperationException("A cold session is read-only");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String attributeName) {
+        for (int i = 0; i < this.attributes.length; i += 2) {
+            if (this.attributes[i].equals(attributeName)) {
+                return (T) this.attributes[i + 1];
+            }
+        }
+        for (int i = 0; i < this.compressedNames.length; i++) {
+            if (this.compressedNames[i].equals(attributeName)) {
+                return (T) inflate()[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Set<String> getAttributeNames() {
+        Set<String> attributeNames = new LinkedHashSet<>(this.attributes.length / 2 + this.compressedNames.length);
+        for (int i = 0; i < this.attributes.length; i += 2) {
+            attributeNames.add((String) this.attributes[i]);
+        }
+        Collections.addAll(attributeNames, this.compressedNames);
+        return Collections.unmodifiableSet(attributeNames);
+    }
+
+    @Override
+    public void setAttribute(String attributeName, Object attributeValue) {
+        throw new UnsupportedOperationException("A cold session is read-only");
+    }
+
+    @Override
+    public void removeAttribute(String attributeName) {
+        throw new UnsupportedOperationException("A cold session is read-only");
+    }
+
+    @Override
+    public Instant getCreationTime() {
+        return CompactSession.toInstant(this.creationTime);
+    }
+
+    @Override
+    public void setLastAccessedTime(Instant lastAccessedTime) {
+        throw new UnsupportedOperationException("A cold session is read-only");
+    }
+
+    @Override
+    public Instant getLastAccessedTime() {
+        return CompactSession.toInstant(this.lastAccessedTime);
+    }
+
+    @Override
+    public void setMaxInactiveInterval(Duration interval) {
+        throw new UnsupportedOperationException("A cold session is read-only");
+    }
+
+    @Override
+    public Duration getMaxInactiveInterval() {
+        return Duration.ofNanos(this.maxInactiveInterval);
+    }
+
+    @Override
+    public boolean isExpired() {
+        return this.maxInactiveInterval >= 0
+            && CompactSession.toNanos(this.clock.instant()) - this.maxInactiveInterval >= this.lastAccessedTime;
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.springframework.session.Session;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A compact {@link Session} used to store sessions in the cache, when
+ * {@link CaffeineIndexedSessionRepository#setCompactStorage(boolean) compact storage} is
+ * enabled.
+ *
+ * <p>
+ * Timestamps and the maximum inactive interval are kept as primitive nanoseconds, and the
+ * attributes as a single array of alternating names and values, instead of the
+ * {@link Instant}, {@link Duration} and {@link java.util.HashMap} objects held by a
+ * {@link org.springframework.session.MapSession}. {@link Instant} and {@link Duration}
+ * instances are created on access. Sessions hold few attributes, so attribute lookups
+ * scan the array. Stored sessions are renamed by the repository, never in place, and
+ * expire according to the clock of the repository.
+ */
+final class CompactSession implements Session {
+
+    private static final Object[] NO_ATTRIBUTES = new Object[0];
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final String id;
+
+    private long creationTime;
+
+    // refreshed in place by the repository, while concurrent loads copy the session
+    private volatile long lastAccessedTime;
+
+    private volatile long maxInactiveInterval;
+
+    private Object[] attributes;
+
+    private final Clock clock;
+
+    private CompactSession(Session session, Clock clock) {
+        this.id = session.getId();
+        this.creationTime = toNanos(session.getCreationTime());
+        this.lastAccessedTime = toNanos(session.getLastAccessedTime());
+        this.maxInactiveInterval = session.getMaxInactiveInterval().toNanos();
+        Set<String> attributeNames = session.getAttributeNames();
+        this.attributes = attributeNames.isEmpty() ? NO_ATTRIBUTES : new Object[attributeNames.size() * 2];
+        int index = 0;
+        for (String attributeName : attributeNames) {
+            this.attributes[index++] = attributeName;
+            this.attributes[index++] = session.getAttribute(attributeName);
+        }
+        this.clock = clock;
+    }
+
+    static CompactSession from(Session session, Clock clock) {
+        return new CompactSession(session, clock);
+    }
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+    @Override
+    public String changeSessionId() {
+        throw new UnsupportedOperationException("A stored session is renamed by the repository");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String attributeName) {
+        int index = indexOf(attributeName);
+        return (index >= 0) ? (T) this.attributes[index + 1] : null;
+    }
+
+    @Override
+    public Set<String> getAttributeNames() {
+        Set<String> attributeNames = new LinkedHashSet<>(this.attributes.length / 2);
+        for (int i = 0; i < this.attributes.length; i += 2) {
+            attributeNames.add((String) this.attributes[i]);
+        }
+        return Collections.unmodifiableSet(attributeNames);
+    }
+
+    @Override
+    public void setAttribute(String attributeName, Object attributeValue) {
+        if (attributeValue == null) {
+            removeAttribute(attributeName);
+            return;
+        }
+        int index = indexOf(attributeName);
+        if (index >= 0) {
+            this.attributes[index + 1] = attributeValue;
+        } else {
+            Object[] attributes = Arrays.copyOf(this.attributes, this.attributes.length + 2);
+            attributes[this.attributes.length] = attributeName;
+            attributes[this.attributes.length + 1] = attributeValue;
+            this.attributes = attributes;
+        }
+    }
+
+    @Override
+    public void removeAttribute(String attributeName) {
+        int index = indexOf(attributeName);
+        if (index < 0) {
+            return;
+        }
+        if (this.attributes.length == 2) {
+            this.attributes = NO_ATTRIBUTES;
+            return;
+        }
+        Object[] attributes = new Object[this.attributes.length - 2];
+        System.arraycopy(this.attributes, 0, attributes, 0, index);
+        System.arraycopy(this.attributes, index + 2, attributes, index, this.attributes.length - index - 2);
+        this.attributes = attributes;
+    }
+
+    @Override
+    public Instant getCreationTime() {
+        return toInstant(this.creationTime);
+    }
+
+    @Override
+    public void setLastAccessedTime(Instant lastAccessedTime) {
+        this.lastAccessedTime = toNanos(lastAccessedTime);
+    }
+
+    @Override
+    public Instant getLastAccessedTime() {
+        return toInstant(this.lastAccessedTime);
+    }
+
+    @Override
+    public void setMaxInactiveInterval(Duration interval) {
+        this.maxInactiveInterval = interval.toNanos();
+    }
+
+    @Override
+    public Duration getMaxInactiveInterval() {
+        return Duration.ofNanos(this.maxInactiveInterval);
+    }
+
+    @Override
+    public boolean isExpired() {
+        return this.maxInactiveInterval >= 0
+            && toNanos(this.clock.instant()) - this.maxInactiveInterval >= this.lastAccessedTime;
+    }
+
+    private int indexOf(String attributeName) {
+        for (int i = 0; i < this.attributes.length; i += 2) {
+            if (this.attributes[i].equals(attributeName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static long toNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+    }
+
+    static Instant toInstant(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+}
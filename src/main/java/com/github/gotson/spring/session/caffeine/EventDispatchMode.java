@@ -0,0 +1,26 @@
+package com.github.gotson.spring.session.caffeine;
+
+/**
+ * How a {@link CaffeineIndexedSessionRepository} dispatches session events.
+ *
+ * @see CaffeineIndexedSessionRepository#setEventDispatchMode(EventDispatchMode)
+ */
+public enum EventDispatchMode {
+
+    /**
+     * Created events are published on the thread saving the session, while deleted and
+     * expired events are published by the cache's executor.
+     */
+    DEFAULT,
+
+    /**
+     * All events are published on the thread operating on the repository. The cache's
+     * maintenance also runs on that thread, and the configured executor is ignored.
+     */
+    SYNCHRONOUS,
+
+    /**
+     * All events are published by the cache's executor, including created events.
+     */
+    ASYNCHRONOUS
+}
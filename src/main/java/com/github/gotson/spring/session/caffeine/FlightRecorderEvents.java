@@ -0,0 +1,161 @@
+package com.github.gotson.spring.session.caffeine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Java Flight Recorder events of {@link CaffeineIndexedSessionRepository}.
+ *
+ * <p>
+ * Session lifecycle events are disabled by default, as they can be numerous: enable
+ * {@value #LIFECYCLE} in the recording settings to record them. Saves and index lookups
+ * are recorded when they take longer than their threshold, 1 ms by default. The backlog
+ * of removal notifications is recorded every second, by a single periodic hook for all
+ * the repositories, which does not keep them reachable. Session ids and index values are
+ * never recorded.
+ */
+final class FlightRecorderEvents {
+
+    static final String LIFECYCLE = "com.github.gotson.spring.session.caffeine.SessionLifecycle";
+
+    static final String SAVE = "com.github.gotson.spring.session.caffeine.SessionSave";
+
+    static final String INDEX_LOOKUP = "com.github.gotson.spring.session.caffeine.IndexLookup";
+
+    static final String REMOVAL_BACKLOG = "com.github.gotson.spring.session.caffeine.RemovalBacklog";
+
+    private static final String CATEGORY = "Spring Session";
+
+    // the repositories recording their removal backlog, guarded by itself
+    private static final Map<CaffeineIndexedSessionRepository, Boolean> removalBacklogRepositories =
+        new WeakHashMap<>();
+
+    private static final Runnable removalBacklogHook = FlightRecorderEvents::recordRemovalBacklogs;
+
+    private static boolean removalBacklogHookRegistered;
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * Record the {@link RemovalBacklog} of a repository periodically, until
+     * {@link #stopRecordingRemovalBacklog(CaffeineIndexedSessionRepository) stopped} or
+     * the repository is garbage collected. The periodic hook is registered with the
+     * first repository, and removed with the last one.
+     */
+    static void recordRemovalBacklog(CaffeineIndexedSessionRepository repository) {
+        synchronized (removalBacklogRepositories) {
+            if (!removalBacklogHookRegistered) {
+                FlightRecorder.addPeriodicEvent(RemovalBacklog.class, removalBacklogHook);
+                removalBacklogHookRegistered = true;
+            }
+            removalBacklogRepositories.put(repository, Boolean.TRUE);
+        }
+    }
+
+    static void stopRecordingRemovalBacklog(CaffeineIndexedSessionRepository repository) {
+        synchronized (removalBacklogRepositories) {
+            removalBacklogRepositories.remove(repository);
+            if (removalBacklogHookRegistered && removalBacklogRepositories.isEmpty()) {
+                FlightRecorder.removePeriodicEvent(removalBacklogHook);
+                removalBacklogHookRegistered = false;
+            }
+        }
+    }
+
+    private static void recordRemovalBacklogs() {
+        List<CaffeineIndexedSessionRepository> repositories;
+        synchronized (removalBacklogRepositories) {
+            repositories = new ArrayList<>(removalBacklogRepositories.keySet());
+        }
+        for (CaffeineIndexedSessionRepository repository : repositories) {
+            repository.recordRemovalBacklog();
+        }
+    }
+
+    static void lifecycle(String action, String cause) {
+        SessionLifecycle event = new SessionLifecycle();
+        if (event.shouldCommit()) {
+            event.action = action;
+            event.cause = cause;
+            event.commit();
+        }
+    }
+
+    @Name(LIFECYCLE)
+    @Label("Session Lifecycle")
+    @Description("A session was created, expired or deleted")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SessionLifecycle extends Event {
+
+        @Label("Action")
+        String action;
+
+        @Label("Cause")
+        String cause;
+    }
+
+    @Name(SAVE)
+    @Label("Session Save")
+    @Category(CATEGORY)
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class SessionSave extends Event {
+
+        @Label("Operation")
+        @Description("create, rename, update, touch or skip")
+        String operation;
+
+        @Label("Copied Attributes")
+        @Description("The number of attributes copied to store the session")
+        int copiedAttributes;
+    }
+
+    @Name(INDEX_LOOKUP)
+    @Label("Session Index Lookup")
+    @Category(CATEGORY)
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class IndexLookup extends Event {
+
+        @Label("Index Name")
+        String indexName;
+
+        @Label("Result Size")
+        int resultSize;
+    }
+
+    @Name(REMOVAL_BACKLOG)
+    @Label("Session Removal Backlog")
+    @Category(CATEGORY)
+    @Period("1 s")
+    @StackTrace(false)
+    static final class RemovalBacklog extends Event {
+
+        @Label("Pending Tasks")
+        @Description("Removal notifications and maintenance tasks submitted to the executor and not run yet")
+        long pendingTasks;
+
+        @Label("Pending Expired Events")
+        @Description("Lightweight expired session events not published yet")
+        long pendingExpiredEvents;
+
+        @Label("Stored Sessions")
+        long storedSessions;
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.springframework.util.Assert;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Signals memory pressure to a {@link CaffeineIndexedSessionRepository}. While under
+ * pressure, the idle timeout of anonymous sessions (sessions without a principal) is
+ * scaled down by the {@link #getIdleTimeoutScale() idle timeout scale}, and restored to
+ * normal once the pressure clears.
+ *
+ * <p>
+ * Use {@link #forHeapUsage(double, double)} to signal pressure based on the heap usage
+ * measured after each garbage collection, or {@link #signal(boolean)} to signal it from
+ * another source. {@link #close() Close} the controller once it is no longer used, to stop
+ * listening to garbage collections.
+ *
+ * @see CaffeineIndexedSessionRepository#setMemoryPressureController(MemoryPressureController)
+ */
+public class MemoryPressureController implements AutoCloseable {
+
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private final double idleTimeoutScale;
+
+    private final List<Consumer<Boolean>> listeners = new CopyOnWriteArrayList<>();
+
+    private final List<NotificationEmitter> collectors = new CopyOnWriteArrayList<>();
+
+    private NotificationListener collectionListener;
+
+    private volatile boolean underPressure;
+
+    /**
+     * Create a new {@link MemoryPressureController} that is only signaled through
+     * {@link #signal(boolean)}.
+     *
+     * @param idleTimeoutScale the factor applied to the idle timeout of anonymous sessions
+     *                         while under pressure, between 0 and 1
+     */
+    public MemoryPressureController(double idleTimeoutScale) {
+        Assert.isTrue(idleTimeoutScale >= 0 && idleTimeoutScale <= 1, "idleTimeoutScale must be between 0 and 1");
+        this.idleTimeoutScale = idleTimeoutScale;
+    }
+
+    /**
+     * Create a new {@link MemoryPressureController} that signals pressure when the heap
+     * usage measured after a garbage collection exceeds the given threshold.
+     *
+     * @param usageThreshold   the ratio of used heap after a garbage collection above
+     *                         which memory is under pressure, between 0 and 1
+     * @param idleTimeoutScale the factor applied to the idle timeout of anonymous sessions
+     *                         while under pressure, between 0 and 1
+     * @return a new {@link MemoryPressureController}
+     */
+    public static MemoryPressureController forHeapUsage(double usageThreshold, double idleTimeoutScale) {
+        Assert.isTrue(usageThreshold > 0 && usageThreshold <= 1, "usageThreshold must be between 0 and 1");
+        MemoryPressureController controller = new MemoryPressureController(idleTimeoutScale);
+        NotificationListener listener = (notification, handback) -> {
+            if (GC_NOTIFICATION.equals(notification.getType())) {
+                controller.signal(heapUsageAfterCollection() > usageThreshold);
+            }
+        };
+        controller.collectionListener = listener;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(listener, null, null);
+                controller.collectors.add(emitter);
+            }
+        }
+        return controller;
+    }
+
+    private static double heapUsageAfterCollection() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = (pool.getType() == MemoryType.HEAP) ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        long max = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+        return (max > 0) ? (double) used / max : 0;
+    }
+
+    /**
+     * Signal whether memory is under pressure. Listeners are only notified when the state
+     * changes.
+     *
+     * @param underPressure whether memory is under pressure
+     */
+    public void signal(boolean underPressure) {
+        synchronized (this) {
+            if (this.underPressure == underPressure) {
+                return;
+            }
+            this.underPressure = underPressure;
+        }
+        this.listeners.forEach((listener) -> listener.accept(underPressure));
+    }
+
+    /**
+     * Whether memory is currently under pressure.
+     *
+     * @return whether memory is under pressure
+     */
+    public boolean isUnderPressure() {
+        return this.underPressure;
+    }
+
+    /**
+     * The factor applied to the idle timeout of anonymous sessions while under pressure.
+     *
+     * @return the idle timeout scale
+     */
+    public double getIdleTimeoutScale() {
+        return this.idleTimeoutScale;
+    }
+
+    /**
+     * Stop listening to garbage collections, if created with
+     * {@link #forHeapUsage(double, double)}. The controller can still be signaled through
+     * {@link #signal(boolean)}.
+     */
+    @Override
+    public void close() {
+        for (NotificationEmitter collector : this.collectors) {
+            try {
+                collector.removeNotificationListener(this.collectionListener);
+            } catch (ListenerNotFoundException ex) {
+                // already removed
+            }
+        }
+        this.collectors.clear();
+    }
+
+    void addListener(Consumer<Boolean> listener) {
+        this.listeners.add(listener);
+    }
+
+    void removeListener(Consumer<Boolean> listener) {
+        this.listeners.remove(listener);
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.gotson.spring.session.caffeine;
+
+import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository.CaffeineSession;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A {@link FindByIndexNameSessionRepository} that stores the sessions of each tenant in
+ * its own {@link CaffeineIndexedSessionRepository}, so that the traffic of one tenant
+ * cannot evict the sessions of the others.
+ *
+ * <p>
+ * The tenant of the current request is resolved by a {@link TenantResolver}, and all
+ * operations only apply to its partition: sessions of other tenants are not found, and
+ * {@link #findByIndexNameAndIndexValue(String, String)} only searches the sessions of
+ * the tenant. Partitions are created on first use by a factory, which configures each
+ * repository without initializing it. Each partition has its own statistics and events.
+ *
+ * <p>
+ * If a {@link #setMaximumSize(Long) maximum size} is set, it is shared between tenants
+ * in proportion to fixed {@link #setTenantWeights(Map) weights}: each tenant with a
+ * weight gets its share of the maximum size, out of the total of the weights plus one
+ * share for the tenants without a weight. Tenants without a weight take their quota from
+ * that share as they appear, and a tenant without a weight appearing once it is used up
+ * has no partition. The quota of a partition is set once, so a new tenant never evicts
+ * the sessions of the others, and the quotas never add up to more than the maximum size.
+ * A maximum size set by the factory still bounds the quota of each partition, and
+ * partitions bounded by {@link CaffeineIndexedSessionRepository#setMaximumWeight(Long)
+ * weight} by the factory keep their own bound and do not take part in the sharing.
+ *
+ * <p>
+ * The partitions share the background threads of the repositories: the clock and the
+ * sweeper of cold sessions.
+ */
+public class PartitionedCaffeineSessionRepository
+    implements FindByIndexNameSessionRepository<CaffeineSession>, ApplicationListener<ContextRefreshedEvent> {
+
+    /**
+     * The tenant of requests for which the {@link TenantResolver} returns {@code null}.
+     */
+    public static final String DEFAULT_TENANT = "default";
+
+    private static final int DEFAULT_WEIGHT = 1;
+
+    private final TenantResolver tenantResolver;
+
+    private final Supplier<CaffeineIndexedSessionRepository> partitionFactory;
+
+    private final ConcurrentMap<String, CaffeineIndexedSessionRepository> partitions = new ConcurrentHashMap<>();
+
+    private Long maximumSize;
+
+    private Map<String, Integer> tenantWeights = Collections.emptyMap();
+
+    private ContextRefreshedEvent contextRefreshedEvent;
+
+    // the quotas taken by the tenants without a weight, guarded by this
+    private long unweightedQuotas;
+
+    private final List<BiConsumer<String, CaffeineIndexedSessionRepository>> partitionListeners =
+        new CopyOnWriteArrayList<>();
+
+    /**
+     * Create a new instance.
+     *
+     * @param tenantResolver   the {@link TenantResolver} of the current request. Cannot be
+     *                         null.
+     * @param partitionFactory the factory of the repository of each tenant, returning a
+     *                         configured but not initialized repository. Cannot be null.
+     */
+    public PartitionedCaffeineSessionRepository(TenantResolver tenantResolver,
+                                                Supplier<CaffeineIndexedSessionRepository> partitionFactory) {
+        Assert.notNull(tenantResolver, "tenantResolver cannot be null");
+        Assert.notNull(partitionFactory, "partitionFactory cannot be null");
+        this.tenantResolver = tenantResolver;
+        this.partitionFactory = partitionFactory;
+    }
+
+    /**
+     * Set the maximum number of sessions of all tenants, shared between them in proportion
+     * to their weight. The default is {@code null}, meaning each partition is bounded as
+     * configured by the factory.
+     *
+     * @param maximumSize the maximum number of sessions of all tenants
+     */
+    public void setMaximumSize(Long maximumSize) {
+        Assert.state(this.partitions.isEmpty(), "maximumSize cannot be changed once partitions are created");
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Set the weight of tenants in the sharing of the {@link #setMaximumSize(Long) maximum
+     * size}. Tenants without a weight share a weight of 1. The default is an empty map.
+     *
+     * @param tenantWeights the weight of tenants. Cannot be null.
+     */
+    public void setTenantWeights(Map<String, Integer> tenantWeights) {
+        Assert.state(this.partitions.isEmpty(), "tenantWeights cannot be changed once partitions are created");
+        Assert.notNull(tenantWeights, "tenantWeights cannot be null");
+        Assert.isTrue(tenantWeights.values().stream().allMatch((weight) -> weight != null && weight > 0),
+            "tenantWeights must be positive");
+        this.tenantWeights = Map.copyOf(tenantWeights);
+    }
+
+    /**
+     * Get the tenants that have a partition.
+     *
+     * @return the tenants that have a partition
+     */
+    public Set<String> getTenants() {
+        return Collections.unmodifiableSet(this.partitions.keySet());
+    }
+
+    /**
+     * Get the partition of a tenant, for instance to read its statistics.
+     *
+     * @param tenant the tenant
+     * @return the repository of the tenant, or {@code null} if it has no partition yet
+     */
+    public CaffeineIndexedSessionRepository getPartition(String tenant) {
+        return this.partitions.get(tenant);
+    }
+
+    /**
+     * Add a callback invoked with each tenant and its partition once initialized, for the
+     * existing partitions and those created afterwards, for instance to bind the metrics
+     * of each tenant.
+     *
+     * @param listener the callback. Cannot be null.
+     */
+    public synchronized void addPartitionListener(BiConsumer<String, CaffeineIndexedSessionRepository> listener) {
+        Assert.notNull(listener, "listener cannot be null");
+        this.partitionListeners.add(listener);
+        this.partitions.forEach(listener);
+    }
+
+    /**
+     * Forward the refresh of the context to the partitions, so that they
+     * {@link CaffeineIndexedSessionRepository#onApplicationEvent(ContextRefreshedEvent)
+     * discover} which session events have listeners.
+     *
+     * @param event the refresh event
+     */
+    @Override
+    public synchronized void onApplicationEvent(ContextRefreshedEvent event) {
+        this.contextRefreshedEvent = event;
+        this.partitions.values().forEach((partition) -> partition.onApplicationEvent(event));
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        this.partitions.values().forEach(CaffeineIndexedSessionRepository::destroy);
+        this.partitions.clear();
+        this.unweightedQuotas = 0;
+    }
+
+    @Override
+    public CaffeineSession createSession() {
+        return partition().createSession();
+    }
+
+    @Override
+    public void save(CaffeineSession session) {
+        // stored by the partition that created or found the session
+        session.getRepository().save(session);
+    }
+
+    @Override
+    public CaffeineSession findById(String id) {
+        return partition().findById(id);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        partition().deleteById(id);
+    }
+
+    @Override
+    public Map<String, CaffeineSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        return partition().findByIndexNameAndIndexValue(indexName, indexValue);
+    }
+
+    private CaffeineIndexedSessionRepository partition() {
+        String tenant = this.tenantResolver.resolveTenant();
+        if (tenant == null) {
+            tenant = DEFAULT_TENANT;
+        }
+        CaffeineIndexedSessionRepository partition = this.partitions.get(tenant);
+        return (partition != null) ? partition : createPartition(tenant);
+    }
+
+    private synchronized CaffeineIndexedSessionRepository createPartition(String tenant) {
+        CaffeineIndexedSessionRepository partition = this.partitions.get(tenant);
+        if (partition != null) {
+            return partition;
+        }
+        partition = this.partitionFactory.get();
+        Assert.state(partition != null, "partitionFactory returned null");
+        Long quota = null;
+        if (this.maximumSize != null && partition.getMaximumWeight() == null) {
+            quota = quota(tenant);
+            if (partition.getMaximumSize() != null) {
+                quota = Math.min(quota, partition.getMaximumSize());
+            }
+            partition.setMaximumSize(quota);
+        }
+        partition.init();
+        if (this.contextRefreshedEvent != null) {
+            partition.onApplicationEvent(this.contextRefreshedEvent);
+        }
+        if (quota != null && !this.tenantWeights.containsKey(tenant)) {
+            this.unweightedQuotas += quota;
+        }
+        this.partitions.put(tenant, partition);
+        for (BiConsumer<String, CaffeineIndexedSessionRepository> listener : this.partitionListeners) {
+            listener.accept(tenant, partition);
+        }
+        return partition;
+    }
+
+    /**
+     * Get the quota of a new tenant, from the fixed share of its weight, or from what is
+     * left of the share of the tenants without a weight.
+     */
+    private long quota(String tenant) {
+        long totalWeight = DEFAULT_WEIGHT + this.tenantWeights.values().stream().mapToLong(Integer::longValue).sum();
+        Integer weight = this.tenantWeights.get(tenant);
+        if (weight != null) {
+            long quota = this.maximumSize * weight / totalWeight;
+            Assert.state(quota > 0, "maximumSize " + this.maximumSize + " is too small for the weight of tenant " + tenant);
+            return quota;
+        }
+        long weightedQuotas = this.tenantWeights.values().stream()
+            .mapToLong((tenantWeight) -> this.maximumSize * tenantWeight / totalWeight)
+            .sum();
+        long left = this.maximumSize - weightedQuotas - this.unweightedQuotas;
+        Assert.state(left > 0, "maximumSize " + this.maximumSize + " is used up, tenant " + tenant
+            + " needs a weight to have a partition");
+        return Math.min(left, Math.max(1, this.maximumSize * DEFAULT_WEIGHT / totalWeight));
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Tracks the peak number of stored sessions, and persists it to a local file so that the
+ * next run can pre-size the cache.
+ */
+final class PeakSessionCount {
+
+    private static final Log logger = LogFactory.getLog(PeakSessionCount.class);
+
+    private final Path file;
+
+    private final LongAccumulator peak = new LongAccumulator(Math::max, 0);
+
+    PeakSessionCount(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the peak persisted by a previous run.
+     *
+     * @return the previous peak, or 0 if unknown
+     */
+    long load() {
+        if (!Files.isRegularFile(this.file)) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(Files.readString(this.file, StandardCharsets.UTF_8).trim()));
+        } catch (IOException | NumberFormatException ex) {
+            logger.warn("Could not read the peak session count from " + this.file, ex);
+            return 0;
+        }
+    }
+
+    void record(long count) {
+        this.peak.accumulate(count);
+    }
+
+    long get() {
+        return this.peak.get();
+    }
+
+    /**
+     * Persist the peak of this run, replacing the previous one. A run that never stored a
+     * session keeps the previous peak.
+     */
+    void persist() {
+        long peak = this.peak.get();
+        if (peak == 0) {
+            return;
+        }
+        Path temp = null;
+        try {
+            Path parent = this.file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            temp = Files.createTempFile(parent, this.file.getFileName().toString(), ".tmp");
+            Files.writeString(temp, Long.toString(peak), StandardCharsets.UTF_8);
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException ex) {
+            logger.warn("Could not persist the peak session count to " + this.file, ex);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ex) {
+                    logger.debug("Could not delete " + temp, ex);
+                }
+            }
+        }
+    }
+}
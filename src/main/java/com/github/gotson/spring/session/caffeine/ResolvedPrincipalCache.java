@@ -0,0 +1,66 @@
+package com.github.gotson.spring.session.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes the principal name resolved for a security context, so that writing the same
+ * security context again does not go through the {@link org.springframework.session.IndexResolver}.
+ *
+ * <p>
+ * Entries are keyed by the identity of the security context, and hold the identity of its
+ * authentication at the time of the resolution: the principal is resolved again when the
+ * authentication of the context is replaced. Security contexts are weakly referenced, and
+ * entries disappear once their context is garbage collected.
+ *
+ * <p>
+ * Only used with the default index resolver, whose result depends on the authentication
+ * of the security context alone: a custom resolver may depend on other attributes of the
+ * session, and is called on each write.
+ */
+final class ResolvedPrincipalCache {
+
+    private static final ClassValue<Method> AUTHENTICATION_GETTER = new ClassValue<>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            Method method = ReflectionUtils.findMethod(type, "getAuthentication");
+            if (method != null) {
+                ReflectionUtils.makeAccessible(method);
+            }
+            return method;
+        }
+    };
+
+    private final Cache<Object, Resolved> resolved = Caffeine.newBuilder().weakKeys().build();
+
+    /**
+     * Get the principal name of the given security context, calling the resolver only if
+     * the context or its authentication changed since the last resolution.
+     *
+     * @param securityContext the security context
+     * @param resolver        resolves the principal name of the security context
+     * @return the principal name, or {@code null}
+     */
+    String resolve(Object securityContext, Supplier<String> resolver) {
+        Method getter = AUTHENTICATION_GETTER.get(securityContext.getClass());
+        if (getter == null) {
+            // changes cannot be detected
+            return resolver.get();
+        }
+        Object authentication = ReflectionUtils.invokeMethod(getter, securityContext);
+        Resolved previous = this.resolved.getIfPresent(securityContext);
+        if (previous != null && previous.authentication() == authentication) {
+            return previous.principal();
+        }
+        String principal = resolver.get();
+        this.resolved.put(securityContext, new Resolved(authentication, principal));
+        return principal;
+    }
+
+    private record Resolved(Object authentication, String principal) {
+    }
+}
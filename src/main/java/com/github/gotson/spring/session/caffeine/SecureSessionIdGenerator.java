@@ -0,0 +1,78 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.jspecify.annotations.NonNull;
+import org.springframework.session.SessionIdGenerator;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A {@link SessionIdGenerator} that generates 128 bits session ids from a
+ * cryptographically secure random number generator, encoded in base64url without padding
+ * (22 characters).
+ *
+ * <p>
+ * Each thread uses its own DRBG {@link SecureRandom}, and random bytes are fetched by
+ * batches to avoid contending on a shared generator during session creation storms.
+ */
+public final class SecureSessionIdGenerator implements SessionIdGenerator {
+
+    private static final SecureSessionIdGenerator INSTANCE = new SecureSessionIdGenerator();
+
+    private static final int ID_LENGTH_BYTES = 16;
+
+    private static final int BUFFER_SIZE_BYTES = ID_LENGTH_BYTES * 64;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final ThreadLocal<RandomBuffer> BUFFER = ThreadLocal.withInitial(RandomBuffer::new);
+
+    private SecureSessionIdGenerator() {
+    }
+
+    /**
+     * Get the singleton instance of {@link SecureSessionIdGenerator}.
+     *
+     * @return the singleton instance of {@link SecureSessionIdGenerator}
+     */
+    public static SecureSessionIdGenerator getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public @NonNull String generate() {
+        return ENCODER.encodeToString(BUFFER.get().next());
+    }
+
+    private static final class RandomBuffer {
+
+        private final SecureRandom random = newSecureRandom();
+
+        private final byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+
+        private int position = BUFFER_SIZE_BYTES;
+
+        byte[] next() {
+            if (this.position == BUFFER_SIZE_BYTES) {
+                this.random.nextBytes(this.buffer);
+                this.position = 0;
+            }
+            byte[] bytes = new byte[ID_LENGTH_BYTES];
+            System.arraycopy(this.buffer, this.position, bytes, 0, ID_LENGTH_BYTES);
+            // do not keep handed out bytes around
+            Arrays.fill(this.buffer, this.position, this.position + ID_LENGTH_BYTES, (byte) 0);
+            this.position += ID_LENGTH_BYTES;
+            return bytes;
+        }
+
+        private static SecureRandom newSecureRandom() {
+            try {
+                return SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException ex) {
+                return new SecureRandom();
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.gotson.spring.session.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.session.Session;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Limits the rate at which new sessions are stored by a
+ * {@link CaffeineIndexedSessionRepository}, so that bursts of session creation, for
+ * instance from bots or credential stuffing, cannot push legitimate sessions out of the
+ * cache. New sessions that are not admitted are still served for the current request,
+ * but are never stored.
+ *
+ * <p>
+ * A global limit applies to all new sessions, and an optional per-client limit applies
+ * to new sessions grouped by a key extracted from the session. Both limits are token
+ * buckets, defined by a sustained rate and a burst size.
+ *
+ * <p>
+ * The repository does not see the request: the client key is extracted from the session
+ * when it is first saved, at the end of the request that created it. The key must then be
+ * stored as an attribute during that request, for instance by a filter that sets the
+ * remote address of the client in the session. A new session without such an attribute
+ * is only subject to the global limit.
+ *
+ * @see CaffeineIndexedSessionRepository#setAdmissionController(SessionAdmissionController)
+ */
+public class SessionAdmissionController {
+
+    private static final long MAXIMUM_TRACKED_CLIENTS = 100_000;
+
+    private final RateLimit globalLimit;
+
+    private final AtomicLong globalBucket = new AtomicLong(Long.MIN_VALUE);
+
+    private final Function<? super Session, String> clientKeyExtractor;
+
+    private final RateLimit clientLimit;
+
+    private final Cache<String, AtomicLong> clientBuckets;
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Create a new {@link SessionAdmissionController} with a global limit only.
+     *
+     * @param permitsPerSecond the sustained rate of new sessions per second
+     * @param burst            the number of new sessions that can be admitted at once
+     */
+    public SessionAdmissionController(double permitsPerSecond, int burst) {
+        this(new RateLimit(permitsPerSecond, burst), null, null);
+    }
+
+    private SessionAdmissionController(RateLimit globalLimit, Function<? super Session, String> clientKeyExtractor,
+                                       RateLimit clientLimit) {
+        this.globalLimit = globalLimit;
+        this.clientKeyExtractor = clientKeyExtractor;
+        this.clientLimit = clientLimit;
+        this.clientBuckets = (clientLimit != null)
+            ? Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_TRACKED_CLIENTS)
+            .expireAfterAccess(Duration.ofNanos(clientLimit.refillNanos()))
+            .build()
+            : null;
+    }
+
+    /**
+     * Create a copy of this {@link SessionAdmissionController} that also limits new
+     * sessions per client. The key extractor is applied to a new session when it is first
+     * saved, and can only read the attributes set during the request that created it.
+     * Sessions for which the key extractor returns {@code null} are only subject to the
+     * global limit.
+     *
+     * @param clientKeyExtractor the function extracting the client key from the attributes
+     *                           of a new session
+     * @param permitsPerSecond   the sustained rate of new sessions per second and client
+     * @param burst              the number of new sessions of a client that can be admitted
+     *                           at once
+     * @return a new {@link SessionAdmissionController}
+     */
+    public SessionAdmissionController withClientLimit(Function<? super Session, String> clientKeyExtractor,
+                                                      double permitsPerSecond, int burst) {
+        Assert.notNull(clientKeyExtractor, "clientKeyExtractor cannot be null");
+        return new SessionAdmissionController(this.globalLimit, clientKeyExtractor,
+            new RateLimit(permitsPerSecond, burst));
+    }
+
+    /**
+     * Get the number of new sessions that were admitted.
+     *
+     * @return the number of admitted sessions
+     */
+    public long getAdmittedCount() {
+        return this.admitted.sum();
+    }
+
+    /**
+     * Get the number of new sessions that were rejected, by the global or the per-client
+     * limit.
+     *
+     * @return the number of rejected sessions
+     */
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    boolean tryAdmit(Session session) {
+        long now = System.nanoTime();
+        // check the client first, so that rejected clients do not drain the global bucket
+        boolean admit = tryAcquireClient(session, now) && this.globalLimit.tryAcquire(this.globalBucket, now);
+        (admit ? this.admitted : this.rejected).increment();
+        return admit;
+    }
+
+    private boolean tryAcquireClient(Session session, long now) {
+        if (this.clientLimit == null) {
+            return true;
+        }
+        String key = this.clientKeyExtractor.apply(session);
+        if (key == null) {
+            return true;
+        }
+        AtomicLong bucket = this.clientBuckets.get(key, (k) -> new AtomicLong(Long.MIN_VALUE));
+        return this.clientLimit.tryAcquire(bucket, now);
+    }
+
+    /**
+     * A token bucket expressed as the theoretical arrival time of the next permit
+     * (generic cell rate algorithm), so that a bucket is a single lock-free
+     * {@link AtomicLong}.
+     */
+    private record RateLimit(long intervalNanos, long toleranceNanos) {
+
+        RateLimit(double permitsPerSecond, int burst) {
+            this(intervalNanos(permitsPerSecond), intervalNanos(permitsPerSecond) * (burstOf(burst) - 1));
+        }
+
+        private static long intervalNanos(double permitsPerSecond) {
+            Assert.isTrue(permitsPerSecond > 0, "permitsPerSecond must be positive");
+            return Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        }
+
+        private static int burstOf(int burst) {
+            Assert.isTrue(burst > 0, "burst must be positive");
+            return burst;
+        }
+
+        long refillNanos() {
+            return this.intervalNanos + this.toleranceNanos;
+        }
+
+        boolean tryAcquire(AtomicLong bucket, long now) {
+            while (true) {
+                long current = bucket.get();
+                long theoretical = Math.max(current, now);
+                if (theoretical - now > this.toleranceNanos) {
+                    return false;
+                }
+                if (bucket.compareAndSet(current, theoretical + this.intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.gotson.spring.session.caffeine;
+
+import com.github.gotson.spring.session.caffeine.events.CaffeineSessionExpiredEvent;
+import com.github.gotson.spring.session.caffeine.events.SessionIdChangedEvent;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.GenericApplicationListenerAdapter;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.session.events.SessionCreatedEvent;
+import org.springframework.session.events.SessionDeletedEvent;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The session event types that have listeners in an {@link ApplicationContext}, so that
+ * events nobody listens to are neither created nor published.
+ *
+ * <p>
+ * Listeners are discovered among the listener beans and the registered listeners,
+ * including {@code @EventListener} methods, of the context and its ancestors. The
+ * {@code SessionEventHttpSessionListenerAdapter} registered by Spring Session is
+ * disregarded when there is no {@code HttpSessionListener} bean to forward events to.
+ */
+final class SessionEventListeners {
+
+    /**
+     * Publish all session events, when listeners are not known.
+     */
+    static final SessionEventListeners ALL = new SessionEventListeners(true, true, true, true);
+
+    private static final String HTTP_SESSION_LISTENER_ADAPTER =
+        "org.springframework.session.web.http.SessionEventHttpSessionListenerAdapter";
+
+    private static final String HTTP_SESSION_LISTENER = "jakarta.servlet.http.HttpSessionListener";
+
+    private final boolean created;
+
+    private final boolean deleted;
+
+    private final boolean expired;
+
+    private final boolean idChanged;
+
+    private SessionEventListeners(boolean created, boolean deleted, boolean expired, boolean idChanged) {
+        this.created = created;
+        this.deleted = deleted;
+        this.expired = expired;
+        this.idChanged = idChanged;
+    }
+
+    /**
+     * Discover the session event types that have listeners in a refreshed context.
+     *
+     * @param context the context the events are published to
+     * @return the session event types that have listeners
+     */
+    static SessionEventListeners discover(ApplicationContext context) {
+        List<GenericApplicationListenerAdapter> listeners = new ArrayList<>();
+        for (ApplicationContext current = context; current != null; current = current.getParent()) {
+            if (!(current instanceof AbstractApplicationContext abstractContext)) {
+                // listeners of this context are not known
+                return ALL;
+            }
+            boolean forwardsToHttpSessionListeners = hasHttpSessionListeners(current);
+            List<ApplicationListener<?>> candidates = new ArrayList<>(abstractContext.getApplicationListeners());
+            for (ApplicationListener<?> listener : current.getBeansOfType(ApplicationListener.class, false, false).values()) {
+                candidates.add(listener);
+            }
+            for (ApplicationListener<?> listener : candidates) {
+                if (forwardsToHttpSessionListeners || !HTTP_SESSION_LISTENER_ADAPTER.equals(listener.getClass().getName())) {
+                    listeners.add(new GenericApplicationListenerAdapter(listener));
+                }
+            }
+        }
+        return new SessionEventListeners(
+            supports(listeners, SessionCreatedEvent.class),
+            supports(listeners, SessionDeletedEvent.class),
+            supports(listeners, CaffeineSessionExpiredEvent.class),
+            supports(listeners, SessionIdChangedEvent.class));
+    }
+
+    boolean created() {
+        return this.created;
+    }
+
+    boolean deleted() {
+        return this.deleted;
+    }
+
+    boolean expired() {
+        return this.expired;
+    }
+
+    boolean idChanged() {
+        return this.idChanged;
+    }
+
+    private static boolean supports(List<GenericApplicationListenerAdapter> listeners,
+                                    Class<? extends ApplicationEvent> eventType) {
+        ResolvableType type = ResolvableType.forClass(eventType);
+        return listeners.stream().anyMatch((listener) -> listener.supportsEventType(type));
+    }
+
+    private static boolean hasHttpSessionListeners(ApplicationContext context) {
+        ClassLoader classLoader = context.getClassLoader();
+        if (!ClassUtils.isPresent(HTTP_SESSION_LISTENER, classLoader)) {
+            return false;
+        }
+        Class<?> type = ClassUtils.resolveClassName(HTTP_SESSION_LISTENER, classLoader);
+        return BeanFactoryUtils.beanNamesForTypeIncludingAncestors(context, type, true, false).length > 0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.gotson.spring.session.caffeine;
+
+import java.util.List;
+
+/**
+ * A page of {@link SessionSummary session summaries}.
+ *
+ * @param sessions   the sessions of this page
+ * @param nextCursor the cursor to pass to {@link SessionQuery#after(String)} to get the
+ *                   next page, or {@code null} if this is the last page
+ * @see CaffeineIndexedSessionRepository#findSessions(SessionQuery)
+ */
+public record SessionPage(List<SessionSummary> sessions, String nextCursor) {
+
+    /**
+     * Whether there are more sessions after this page.
+     *
+     * @return whether there is a next page
+     */
+    public boolean hasNext() {
+        return this.nextCursor != null;
+    }
+}
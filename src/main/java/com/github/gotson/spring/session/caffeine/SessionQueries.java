@@ -0,0 +1,186 @@
+package com.github.gotson.spring.session.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.Policy.CacheEntry;
+import org.springframework.session.Session;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Executes {@link SessionQuery session queries} against the sessions cache, without
+ * copying the stored sessions.
+ *
+ * <p>
+ * Queries scan the cache and keep the best matches in a bounded heap, without taking the
+ * cache's eviction lock. Queries by expiration read the expiration time of each entry
+ * rather than following the cache's timer wheel, whose buckets are only roughly ordered
+ * and would make pages skip or repeat sessions.
+ */
+final class SessionQueries {
+
+    private static final Comparator<Session> BY_ACTIVITY = Comparator.comparing(Session::getLastAccessedTime)
+        .thenComparing(Session::getId);
+
+    private static final Comparator<CacheEntry<String, Session>> BY_EXPIRATION =
+        Comparator.<CacheEntry<String, Session>>comparingLong(CacheEntry::expiresAt)
+            .thenComparing(CacheEntry::getKey);
+
+    private static final String ACTIVITY_CURSOR = "a";
+
+    private static final String EXPIRATION_CURSOR = "e";
+
+    private SessionQueries() {
+    }
+
+    static Stream<SessionSummary> stream(Cache<String, Session> sessions) {
+        return sessions.asMap().values().stream().map(SessionSummary::from);
+    }
+
+    static SessionPage find(Cache<String, Session> sessions, SessionQuery query, Instant now) {
+        Predicate<Session> idle = idleFilter(query, now);
+        return switch (query.getOrder()) {
+            case MOST_RECENTLY_ACTIVE -> findByActivity(sessions, query, false, idle);
+            case LEAST_RECENTLY_ACTIVE -> findByActivity(sessions, query, true, idle);
+            case EXPIRING_SOONEST -> findByExpiration(sessions, query, true, idle);
+            case EXPIRING_LATEST -> findByExpiration(sessions, query, false, idle);
+        };
+    }
+
+    private static Predicate<Session> idleFilter(SessionQuery query, Instant now) {
+        if (query.getMinIdleTime() == null) {
+            return (session) -> true;
+        }
+        Instant idleSince = now.minus(query.getMinIdleTime());
+        return (session) -> !session.getLastAccessedTime().isAfter(idleSince);
+    }
+
+    private static SessionPage findByActivity(Cache<String, Session> sessions, SessionQuery query,
+                                              boolean ascending, Predicate<Session> idle) {
+        Comparator<Session> order = ascending ? BY_ACTIVITY : BY_ACTIVITY.reversed();
+        String[] cursor = decodeCursor(query.getCursor(), ACTIVITY_CURSOR);
+        Instant cursorTime = (cursor != null) ? parseInstant(cursor[0]) : null;
+        String cursorId = (cursor != null) ? cursor[1] : null;
+
+        // the head of the heap is the worst match, keep one more than the limit to detect a next page
+        int capacity = query.getLimit() + 1;
+        PriorityQueue<Session> heap = new PriorityQueue<>(capacity, order.reversed());
+        for (Session session : sessions.asMap().values()) {
+            if (!idle.test(session)) {
+                continue;
+            }
+            if (cursor != null) {
+                int compared = session.getLastAccessedTime().compareTo(cursorTime);
+                if (compared == 0) {
+                    compared = session.getId().compareTo(cursorId);
+                }
+                if ((ascending && compared <= 0) || (!ascending && compared >= 0)) {
+                    continue;
+                }
+            }
+            if (heap.size() < capacity) {
+                heap.offer(session);
+            } else if (order.compare(session, heap.peek()) < 0) {
+                heap.poll();
+                heap.offer(session);
+            }
+        }
+
+        List<Session> matches = new ArrayList<>(heap);
+        matches.sort(order);
+        boolean hasNext = matches.size() > query.getLimit();
+        List<SessionSummary> page = matches.stream().limit(query.getLimit()).map(SessionSummary::from).toList();
+        String nextCursor = null;
+        if (hasNext) {
+            SessionSummary last = page.get(page.size() - 1);
+            Instant time = last.lastAccessedTime();
+            nextCursor = encodeCursor(ACTIVITY_CURSOR, time.getEpochSecond() + "." + time.getNano(), last.id());
+        }
+        return new SessionPage(page, nextCursor);
+    }
+
+    private static SessionPage findByExpiration(Cache<String, Session> sessions, SessionQuery query,
+                                                boolean soonest, Predicate<Session> idle) {
+        Policy<String, Session> policy = sessions.policy();
+        Comparator<CacheEntry<String, Session>> order = soonest ? BY_EXPIRATION : BY_EXPIRATION.reversed();
+        String[] cursor = decodeCursor(query.getCursor(), EXPIRATION_CURSOR);
+        long cursorExpiresAt = (cursor != null) ? Long.parseLong(cursor[0]) : 0;
+        String cursorId = (cursor != null) ? cursor[1] : null;
+
+        // the head of the heap is the worst match, keep one more than the limit to detect a next page
+        int capacity = query.getLimit() + 1;
+        PriorityQueue<CacheEntry<String, Session>> heap = new PriorityQueue<>(capacity, order.reversed());
+        for (String id : sessions.asMap().keySet()) {
+            CacheEntry<String, Session> entry = policy.getEntryIfPresentQuietly(id);
+            if (entry == null || !idle.test(entry.getValue())) {
+                continue;
+            }
+            if (cursor != null) {
+                int compared = Long.compare(entry.expiresAt(), cursorExpiresAt);
+                if (compared == 0) {
+                    compared = entry.getKey().compareTo(cursorId);
+                }
+                if ((soonest && compared <= 0) || (!soonest && compared >= 0)) {
+                    continue;
+                }
+            }
+            if (heap.size() < capacity) {
+                heap.offer(entry);
+            } else if (order.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.offer(entry);
+            }
+        }
+
+        List<CacheEntry<String, Session>> entries = new ArrayList<>(heap);
+        entries.sort(order);
+        boolean hasNext = entries.size() > query.getLimit();
+        List<CacheEntry<String, Session>> pageEntries = hasNext ? entries.subList(0, query.getLimit()) : entries;
+        List<SessionSummary> page = pageEntries.stream().map((entry) -> SessionSummary.from(entry.getValue())).toList();
+        String nextCursor = null;
+        if (hasNext) {
+            CacheEntry<String, Session> last = pageEntries.get(pageEntries.size() - 1);
+            nextCursor = encodeCursor(EXPIRATION_CURSOR, Long.toString(last.expiresAt()), last.getKey());
+        }
+        return new SessionPage(page, nextCursor);
+    }
+
+    private static Instant parseInstant(String position) {
+        int separator = position.indexOf('.');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor position: " + position);
+        }
+        return Instant.ofEpochSecond(Long.parseLong(position.substring(0, separator)),
+            Long.parseLong(position.substring(separator + 1)));
+    }
+
+    private static String encodeCursor(String type, String position, String id) {
+        // positions never contain the separator, ids may
+        String cursor = type + ":" + position + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor, String expectedType) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(":", 3);
+            if (parts.length == 3 && expectedType.equals(parts[0])) {
+                return new String[]{parts[1], parts[2]};
+            }
+        } catch (IllegalArgumentException ex) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Invalid cursor for this query: " + cursor);
+    }
+}
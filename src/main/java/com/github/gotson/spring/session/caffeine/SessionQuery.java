@@ -0,0 +1,164 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * A query for a page of sessions of a {@link CaffeineIndexedSessionRepository}.
+ *
+ * <p>
+ * Queries are immutable, and built from one of the static factory methods:
+ *
+ * <pre class="code">
+ * SessionQuery.mostRecentlyActive(100);
+ * SessionQuery.leastRecentlyActive(100).idleFor(Duration.ofMinutes(10));
+ * </pre>
+ *
+ * The next page is requested by passing the {@link SessionPage#nextCursor() cursor} of
+ * the previous page to {@link #after(String)}.
+ *
+ * @see CaffeineIndexedSessionRepository#findSessions(SessionQuery)
+ */
+public final class SessionQuery {
+
+    private final Order order;
+
+    private final int limit;
+
+    private final Duration minIdleTime;
+
+    private final String cursor;
+
+    private SessionQuery(Order order, int limit, Duration minIdleTime, String cursor) {
+        Assert.isTrue(limit > 0, "limit must be positive");
+        this.order = order;
+        this.limit = limit;
+        this.minIdleTime = minIdleTime;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Query the sessions accessed most recently first.
+     *
+     * @param limit the maximum number of sessions per page
+     * @return a new query
+     */
+    public static SessionQuery mostRecentlyActive(int limit) {
+        return new SessionQuery(Order.MOST_RECENTLY_ACTIVE, limit, null, null);
+    }
+
+    /**
+     * Query the sessions accessed least recently first.
+     *
+     * @param limit the maximum number of sessions per page
+     * @return a new query
+     */
+    public static SessionQuery leastRecentlyActive(int limit) {
+        return new SessionQuery(Order.LEAST_RECENTLY_ACTIVE, limit, null, null);
+    }
+
+    /**
+     * Query the sessions that will expire soonest first.
+     *
+     * @param limit the maximum number of sessions per page
+     * @return a new query
+     */
+    public static SessionQuery expiringSoonest(int limit) {
+        return new SessionQuery(Order.EXPIRING_SOONEST, limit, null, null);
+    }
+
+    /**
+     * Query the sessions that will expire latest first.
+     *
+     * @param limit the maximum number of sessions per page
+     * @return a new query
+     */
+    public static SessionQuery expiringLatest(int limit) {
+        return new SessionQuery(Order.EXPIRING_LATEST, limit, null, null);
+    }
+
+    /**
+     * Only return sessions that have not been accessed for at least the given time.
+     *
+     * @param minIdleTime the minimum idle time of the returned sessions
+     * @return a new query
+     */
+    public SessionQuery idleFor(Duration minIdleTime) {
+        Assert.notNull(minIdleTime, "minIdleTime cannot be null");
+        return new SessionQuery(this.order, this.limit, minIdleTime, this.cursor);
+    }
+
+    /**
+     * Return the sessions following the given cursor.
+     *
+     * @param cursor the {@link SessionPage#nextCursor() cursor} of the previous page
+     * @return a new query
+     */
+    public SessionQuery after(String cursor) {
+        return new SessionQuery(this.order, this.limit, this.minIdleTime, cursor);
+    }
+
+    /**
+     * Return the order in which sessions are returned.
+     *
+     * @return the order
+     */
+    public Order getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Return the maximum number of sessions per page.
+     *
+     * @return the limit
+     */
+    public int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Return the minimum idle time of the returned sessions.
+     *
+     * @return the minimum idle time, or {@code null} to return sessions regardless of
+     * their last access
+     */
+    public Duration getMinIdleTime() {
+        return this.minIdleTime;
+    }
+
+    /**
+     * Return the cursor of the previous page.
+     *
+     * @return the cursor, or {@code null} to return the first page
+     */
+    public String getCursor() {
+        return this.cursor;
+    }
+
+    /**
+     * The order in which sessions are returned.
+     */
+    public enum Order {
+
+        /**
+         * Sessions accessed most recently first.
+         */
+        MOST_RECENTLY_ACTIVE,
+
+        /**
+         * Sessions accessed least recently first.
+         */
+        LEAST_RECENTLY_ACTIVE,
+
+        /**
+         * Sessions that will expire soonest first.
+         */
+        EXPIRING_SOONEST,
+
+        /**
+         * Sessions that will expire latest first.
+         */
+        EXPIRING_LATEST
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.springframework.session.Session;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A lightweight, read-only view of a stored session, as returned by the query methods of
+ * {@link CaffeineIndexedSessionRepository}. It does not hold the session attributes.
+ *
+ * @param id                   the session id
+ * @param principalName        the principal name, or {@code null} for anonymous sessions
+ * @param creationTime         the creation time of the session
+ * @param lastAccessedTime     the last time the session was accessed
+ * @param maxInactiveInterval  the maximum inactive interval of the session
+ * @param attributeCount       the number of attributes of the session
+ * @param estimatedSizeInBytes a rough estimate of the heap retained by the session
+ * @see CaffeineIndexedSessionRepository#findSessions(SessionQuery)
+ * @see CaffeineIndexedSessionRepository#streamSessions()
+ */
+public record SessionSummary(
+    String id,
+    String principalName,
+    Instant creationTime,
+    Instant lastAccessedTime,
+    Duration maxInactiveInterval,
+    int attributeCount,
+    long estimatedSizeInBytes) {
+
+    /**
+     * Estimated overhead of a session with no attributes: the session object, its id,
+     * timestamps, interval and attributes map.
+     */
+    private static final long SESSION_OVERHEAD = 240;
+
+    /**
+     * Estimated overhead of each attribute in the attributes map, excluding its value.
+     */
+    private static final long ATTRIBUTE_OVERHEAD = 48;
+
+    static SessionSummary from(Session session) {
+        return new SessionSummary(session.getId(),
+            session.getAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE),
+            session.getCreationTime(), session.getLastAccessedTime(), session.getMaxInactiveInterval(),
+            session.getAttributeNames().size(), estimateSize(session));
+    }
+
+    static long estimateSize(Session session) {
+        if (session instanceof ColdSession cold) {
+            // not inflated to be measured, the uncompressed attributes are few and small
+            return SESSION_OVERHEAD + ATTRIBUTE_OVERHEAD + cold.getCompressedSize();
+        }
+        long size = SESSION_OVERHEAD;
+        for (String name : session.getAttributeNames()) {
+            size += ATTRIBUTE_OVERHEAD + name.length() + estimateSize(session.getAttribute(name));
+        }
+        return size;
+    }
+
+    private static long estimateSize(Object value) {
+        if (value instanceof CharSequence chars) {
+            return 40 + chars.length();
+        }
+        if (value instanceof byte[] bytes) {
+            return 16 + bytes.length;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 16;
+        }
+        // opaque object graph, count a handful of small objects
+        return 64;
+    }
+
+    /**
+     * The time elapsed since the session was last accessed.
+     *
+     * @param now the current time
+     * @return the idle time of the session
+     */
+    public Duration idleTime(Instant now) {
+        return Duration.between(this.lastAccessedTime, now);
+    }
+}
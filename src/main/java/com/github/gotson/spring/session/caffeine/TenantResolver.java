@@ -0,0 +1,28 @@
+package com.github.gotson.spring.session.caffeine;
+
+/**
+ * Resolves the tenant of the current request, for a
+ * {@link PartitionedCaffeineSessionRepository}. It is typically based on the host name,
+ * a header or the path of the request.
+ *
+ * <p>
+ * The {@code SessionRepositoryFilter} runs before Spring's {@code RequestContextFilter},
+ * so {@code RequestContextHolder} is not populated when the tenant is resolved: the
+ * tenant is typically bound to the current thread by a filter ordered before the
+ * {@code SessionRepositoryFilter}.
+ *
+ * <p>
+ * Each tenant gets its own partition, so the resolver should only return tenants known
+ * to the application, and not arbitrary values supplied by clients.
+ */
+@FunctionalInterface
+public interface TenantResolver {
+
+    /**
+     * Resolve the tenant of the current request.
+     *
+     * @return the tenant, or {@code null} for the
+     * {@link PartitionedCaffeineSessionRepository#DEFAULT_TENANT default tenant}
+     */
+    String resolveTenant();
+}
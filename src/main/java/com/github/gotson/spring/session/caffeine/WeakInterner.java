@@ -0,0 +1,79 @@
+package com.github.gotson.spring.session.caffeine;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonicalizes strings repeated across stored sessions, such as attribute names and
+ * principal names, so that equal strings share a single instance.
+ *
+ * <p>
+ * Canonical instances are weakly referenced, and disappear once no stored session uses
+ * them. The number of canonical instances is bounded: once the bound is reached, new
+ * strings are returned as is. The table is split in independently locked stripes to
+ * limit contention.
+ */
+final class WeakInterner {
+
+    private static final int STRIPES = 16;
+
+    private final int maximumSizePerStripe;
+
+    private final Map<String, WeakReference<String>>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    WeakInterner(int maximumSize) {
+        this.maximumSizePerStripe = Math.max(1, maximumSize / STRIPES);
+        this.stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new WeakHashMap<>();
+        }
+    }
+
+    /**
+     * Get the canonical instance of a string, making it canonical if there is none yet
+     * and the bound is not reached.
+     *
+     * @param value the string
+     * @return the canonical instance, or the string itself
+     */
+    String intern(String value) {
+        Map<String, WeakReference<String>> stripe = stripe(value);
+        synchronized (stripe) {
+            String canonical = get(stripe, value);
+            if (canonical != null) {
+                return canonical;
+            }
+            if (stripe.size() < this.maximumSizePerStripe) {
+                stripe.put(value, new WeakReference<>(value));
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Get the canonical instance of a string if there is one, without making it
+     * canonical otherwise.
+     *
+     * @param value the string
+     * @return the canonical instance, or the string itself
+     */
+    String canonical(String value) {
+        Map<String, WeakReference<String>> stripe = stripe(value);
+        synchronized (stripe) {
+            String canonical = get(stripe, value);
+            return (canonical != null) ? canonical : value;
+        }
+    }
+
+    private Map<String, WeakReference<String>> stripe(String value) {
+        int hash = value.hashCode();
+        return this.stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static String get(Map<String, WeakReference<String>> stripe, String value) {
+        WeakReference<String> reference = stripe.get(value);
+        return (reference != null) ? reference.get() : null;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.gotson.spring.session.caffeine.actuate;
+
+import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository;
+import com.github.gotson.spring.session.caffeine.CaffeineSessionRepositoryManagement;
+import com.github.gotson.spring.session.caffeine.PartitionedCaffeineSessionRepository;
+import com.github.gotson.spring.session.caffeine.actuate.CaffeineSessionsEndpoint.CaffeineSessionsDescriptor;
+import com.github.gotson.spring.session.caffeine.actuate.CaffeineSessionsEndpoint.ExpiredSessionsDescriptor;
+import org.springframework.boot.actuate.endpoint.OperationResponseBody;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.OptionalParameter;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.util.Assert;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link Endpoint @Endpoint} to show the state of each partition of a
+ * {@link PartitionedCaffeineSessionRepository}, change its limits at runtime, and expire
+ * its sessions.
+ *
+ * <ul>
+ * <li>reading the endpoint shows the state of the partition of each tenant, and reading
+ * {@code /{tenant}} the state of one partition</li>
+ * <li>writing {@code /{tenant}} changes the limits of a partition, the quotas of a shared
+ * maximum size are recomputed when a new tenant appears</li>
+ * <li>deleting {@code /{tenant}} removes the expired sessions of a partition, as the
+ * {@link CaffeineSessionsEndpoint} does for a single repository</li>
+ * </ul>
+ *
+ * Tenants without a partition are not found.
+ *
+ * @see CaffeineSessionsEndpoint
+ */
+@Endpoint(id = "caffeinesessions")
+public class CaffeineSessionPartitionsEndpoint {
+
+    private final PartitionedCaffeineSessionRepository sessionRepository;
+
+    /**
+     * Create a new instance.
+     *
+     * @param sessionRepository the partitioned repository. Cannot be null.
+     */
+    public CaffeineSessionPartitionsEndpoint(PartitionedCaffeineSessionRepository sessionRepository) {
+        Assert.notNull(sessionRepository, "sessionRepository cannot be null");
+        this.sessionRepository = sessionRepository;
+    }
+
+    @ReadOperation
+    public TenantsDescriptor tenants() {
+        Map<String, CaffeineSessionsDescriptor> tenants = new TreeMap<>();
+        for (String tenant : this.sessionRepository.getTenants()) {
+            CaffeineSessionsEndpoint endpoint = partitionEndpoint(tenant);
+            if (endpoint != null) {
+                tenants.put(tenant, endpoint.caffeineSessions());
+            }
+        }
+        return new TenantsDescriptor(tenants);
+    }
+
+    @ReadOperation
+    public CaffeineSessionsDescriptor tenant(@Selector String tenant) {
+        CaffeineSessionsEndpoint endpoint = partitionEndpoint(tenant);
+        return (endpoint != null) ? endpoint.caffeineSessions() : null;
+    }
+
+    @WriteOperation
+    public CaffeineSessionsDescriptor configure(@Selector String tenant,
+                                                @OptionalParameter Long maximumSize,
+                                                @OptionalParameter Long maximumWeight,
+                                                @OptionalParameter Integer defaultMaxInactiveInterval) {
+        CaffeineSessionsEndpoint endpoint = partitionEndpoint(tenant);
+        return (endpoint != null) ? endpoint.configure(maximumSize, maximumWeight, defaultMaxInactiveInterval) : null;
+    }
+
+    @DeleteOperation
+    public ExpiredSessionsDescriptor expire(@Selector String tenant, @OptionalParameter Long inactiveSeconds) {
+        CaffeineSessionsEndpoint endpoint = partitionEndpoint(tenant);
+        return (endpoint != null) ? endpoint.expire(inactiveSeconds) : null;
+    }
+
+    private CaffeineSessionsEndpoint partitionEndpoint(String tenant) {
+        CaffeineIndexedSessionRepository partition = this.sessionRepository.getPartition(tenant);
+        return (partition != null)
+            ? new CaffeineSessionsEndpoint(new CaffeineSessionRepositoryManagement(partition, tenant))
+            : null;
+    }
+
+    /**
+     * Description of the partitions of the repository.
+     *
+     * @param tenants the state of the partition of each tenant
+     */
+    public record TenantsDescriptor(Map<String, CaffeineSessionsDescriptor> tenants) implements OperationResponseBody {
+    }
+}
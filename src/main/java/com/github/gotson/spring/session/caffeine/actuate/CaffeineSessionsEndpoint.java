@@ -0,0 +1,121 @@
+package com.github.gotson.spring.session.caffeine.actuate;
+
+import com.github.gotson.spring.session.caffeine.CaffeineSessionRepositoryManagement;
+import org.springframework.boot.actuate.endpoint.OperationResponseBody;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.OptionalParameter;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.util.Assert;
+
+/**
+ * {@link Endpoint @Endpoint} to show the state of the Caffeine session repository, change
+ * its limits at runtime, and expire sessions.
+ *
+ * <ul>
+ * <li>reading the endpoint shows the number of stored sessions, the cache statistics,
+ * the backlog of session events and the current limits</li>
+ * <li>writing {@code maximumSize}, {@code maximumWeight} or
+ * {@code defaultMaxInactiveInterval} changes the corresponding limits</li>
+ * <li>deleting the endpoint removes the expired sessions, and with
+ * {@code inactiveSeconds} also expires the sessions inactive for at least that many
+ * seconds</li>
+ * </ul>
+ *
+ * @see CaffeineSessionRepositoryManagement
+ */
+@Endpoint(id = "caffeinesessions")
+public class CaffeineSessionsEndpoint {
+
+    private final CaffeineSessionRepositoryManagement management;
+
+    /**
+     * Create a new instance.
+     *
+     * @param management the management operations of the repository. Cannot be null.
+     */
+    public CaffeineSessionsEndpoint(CaffeineSessionRepositoryManagement management) {
+        Assert.notNull(management, "management cannot be null");
+        this.management = management;
+    }
+
+    @ReadOperation
+    public CaffeineSessionsDescriptor caffeineSessions() {
+        return new CaffeineSessionsDescriptor(
+            this.management.getSessionCount(),
+            this.management.getHitCount(),
+            this.management.getMissCount(),
+            this.management.getEvictionCount(),
+            this.management.getRejectedSessionCount(),
+            this.management.getPendingTaskCount(),
+            this.management.getPendingExpiredEventCount(),
+            this.management.getMaximumSize(),
+            this.management.getMaximumWeight(),
+            this.management.getDefaultMaxInactiveInterval());
+    }
+
+    @WriteOperation
+    public CaffeineSessionsDescriptor configure(@OptionalParameter Long maximumSize,
+                                                @OptionalParameter Long maximumWeight,
+                                                @OptionalParameter Integer defaultMaxInactiveInterval) {
+        if (maximumSize != null) {
+            this.management.setMaximumSize(maximumSize);
+        }
+        if (maximumWeight != null) {
+            this.management.setMaximumWeight(maximumWeight);
+        }
+        if (defaultMaxInactiveInterval != null) {
+            this.management.setDefaultMaxInactiveInterval(defaultMaxInactiveInterval);
+        }
+        return caffeineSessions();
+    }
+
+    @DeleteOperation
+    public ExpiredSessionsDescriptor expire(@OptionalParameter Long inactiveSeconds) {
+        if (inactiveSeconds == null) {
+            this.management.cleanUp();
+            return new ExpiredSessionsDescriptor(0);
+        }
+        return new ExpiredSessionsDescriptor(this.management.expireInactiveSessions(inactiveSeconds));
+    }
+
+    /**
+     * Description of the state of the repository.
+     *
+     * @param sessionCount               the approximate number of stored sessions
+     * @param hitCount                   the number of lookups that found a session
+     * @param missCount                  the number of lookups that did not find a session
+     * @param evictionCount              the number of sessions evicted from the cache
+     * @param rejectedSessionCount       the number of new sessions not stored because of
+     *                                   admission control
+     * @param pendingTaskCount           the number of removal notifications and session
+     *                                   events not delivered yet
+     * @param pendingExpiredEventCount   the number of lightweight expired session events
+     *                                   not published yet
+     * @param maximumSize                the maximum number of sessions, or {@code null}
+     * @param maximumWeight              the maximum weight of sessions, or {@code null}
+     * @param defaultMaxInactiveInterval the maximum inactive interval in seconds of new
+     *                                   sessions, or {@code null}
+     */
+    public record CaffeineSessionsDescriptor(
+        long sessionCount,
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long rejectedSessionCount,
+        long pendingTaskCount,
+        int pendingExpiredEventCount,
+        Long maximumSize,
+        Long maximumWeight,
+        Integer defaultMaxInactiveInterval) implements OperationResponseBody {
+    }
+
+    /**
+     * Description of the sessions expired on demand.
+     *
+     * @param expiredSessions the number of expired sessions
+     */
+    public record ExpiredSessionsDescriptor(int expiredSessions) implements OperationResponseBody {
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.gotson.spring.session.caffeine.autoconfigure;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository;
+import com.github.gotson.spring.session.caffeine.CaffeineSessionRepositoryManagement;
+import com.github.gotson.spring.session.caffeine.PartitionedCaffeineSessionRepository;
+import com.github.gotson.spring.session.caffeine.SessionAdmissionController;
+import com.github.gotson.spring.session.caffeine.TenantResolver;
+import com.github.gotson.spring.session.caffeine.config.annotation.web.http.CaffeineHttpSessionConfiguration;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.session.SessionAutoConfiguration;
+import org.springframework.boot.autoconfigure.session.SessionProperties;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jmx.export.MBeanExporter;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * {@link org.springframework.boot.autoconfigure.EnableAutoConfiguration Auto-configuration}
+ * for Spring Session backed by Caffeine, configured through the
+ * {@code spring.session.caffeine.*} properties.
+ *
+ * <p>
+ * The session timeout is taken from {@code spring.session.timeout}, falling back to
+ * {@code server.servlet.session.timeout}. It backs off if a {@link SessionRepository} is
+ * already defined, for instance with {@code @EnableCaffeineHttpSession}.
+ *
+ * <p>
+ * If a {@link TenantResolver} bean is defined, sessions are partitioned by tenant: each
+ * partition is configured by the properties, and its management operations and metrics
+ * are exposed with the tenant.
+ */
+@AutoConfiguration(before = SessionAutoConfiguration.class)
+@ConditionalOnClass({Caffeine.class, SessionRepository.class})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnMissingBean(SessionRepository.class)
+@EnableConfigurationProperties({CaffeineSessionProperties.class, SessionProperties.class, ServerProperties.class})
+@Import(CaffeineHttpSessionConfiguration.class)
+public class CaffeineSessionAutoConfiguration {
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    SessionRepositoryCustomizer<CaffeineIndexedSessionRepository> caffeineSessionPropertiesCustomizer(
+        CaffeineSessionProperties caffeineSessionProperties, SessionProperties sessionProperties,
+        ObjectProvider<ServerProperties> serverProperties,
+        ObjectProvider<SessionAdmissionController> admissionController) {
+        return (sessionRepository) -> {
+            PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+            Duration timeout = sessionProperties.determineTimeout(() -> {
+                ServerProperties properties = serverProperties.getIfAvailable();
+                return (properties != null) ? properties.getServlet().getSession().getTimeout() : null;
+            });
+            map.from(timeout).as(Duration::getSeconds).as(Math::toIntExact).to(sessionRepository::setDefaultMaxInactiveInterval);
+            map.from(caffeineSessionProperties.getMaxSessionLifetime()).as(Duration::getSeconds).as(Math::toIntExact)
+                .to(sessionRepository::setMaxSessionLifetime);
+            map.from(caffeineSessionProperties.isLazySessionCreation()).to(sessionRepository::setLazySessionCreation);
+            map.from(caffeineSessionProperties.isCompactStorage()).to(sessionRepository::setCompactStorage);
+            map.from(caffeineSessionProperties.getColdSessionThreshold()).to(sessionRepository::setColdSessionThreshold);
+            map.from(caffeineSessionProperties.isStringDeduplication()).to(sessionRepository::setStringDeduplication);
+            map.from(caffeineSessionProperties.getMaximumSessionsPerPrincipal())
+                .to(sessionRepository::setMaximumSessionsPerPrincipal);
+            map.from(caffeineSessionProperties.getAttributeChangeDetection())
+                .to(sessionRepository::setAttributeChangeDetection);
+            map.from(caffeineSessionProperties.getInitialCapacity()).to(sessionRepository::setInitialCapacity);
+            map.from(caffeineSessionProperties.getSizingHintFile()).to(sessionRepository::setSizingHintFile);
+            map.from(caffeineSessionProperties.isWarmUp()).to(sessionRepository::setWarmUp);
+            map.from(caffeineSessionProperties.getMaximumSize()).to(sessionRepository::setMaximumSize);
+            map.from(caffeineSessionProperties.getMaximumWeight()).to(sessionRepository::setMaximumWeight);
+            map.from(caffeineSessionProperties.getEventDispatch()).to(sessionRepository::setEventDispatchMode);
+            map.from(caffeineSessionProperties.getIndexNames()).to(sessionRepository::setIndexedAttributeNames);
+            map.from(caffeineSessionProperties.getExpiredEvents().isLightweight())
+                .to(sessionRepository::setLightweightExpiredEvents);
+            map.from(caffeineSessionProperties.getExpiredEvents().getAttributeNames())
+                .to(sessionRepository::setExpiredEventAttributeNames);
+            map.from(caffeineSessionProperties.getMetrics().isEnabled()).to(sessionRepository::setRecordStats);
+            map.from(admissionController.getIfAvailable(() -> admissionController(caffeineSessionProperties.getAdmission())))
+                .to(sessionRepository::setAdmissionController);
+            if (caffeineSessionProperties.getExecutor() == CaffeineSessionProperties.ExecutorType.DIRECT) {
+                sessionRepository.setExecutor(Runnable::run);
+            }
+            if (caffeineSessionProperties.getScheduler() == CaffeineSessionProperties.SchedulerType.SYSTEM) {
+                sessionRepository.setScheduler(Scheduler.systemScheduler());
+            }
+        };
+    }
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    SessionRepositoryCustomizer<PartitionedCaffeineSessionRepository> caffeineSessionTenantsPropertiesCustomizer(
+        CaffeineSessionProperties caffeineSessionProperties) {
+        return (sessionRepository) -> {
+            PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+            map.from(caffeineSessionProperties.getTenants().getMaximumSize()).to(sessionRepository::setMaximumSize);
+            map.from(caffeineSessionProperties.getTenants().getWeights()).to(sessionRepository::setTenantWeights);
+        };
+    }
+
+    @Bean
+    @ConditionalOnMissingBean({CaffeineSessionRepositoryManagement.class, TenantResolver.class})
+    CaffeineSessionRepositoryManagement caffeineSessionRepositoryManagement(
+        ObjectProvider<FindByIndexNameSessionRepository<?>> sessionRepository) {
+        // the session repository bean is declared with its interface type
+        FindByIndexNameSessionRepository<?> sessions = sessionRepository.getObject();
+        Assert.state(sessions instanceof CaffeineIndexedSessionRepository,
+            "The session repository is not a CaffeineIndexedSessionRepository");
+        return new CaffeineSessionRepositoryManagement((CaffeineIndexedSessionRepository) sessions);
+    }
+
+    /**
+     * Export the management operations of each partition, as they are created, when JMX
+     * export is enabled.
+     */
+    @Bean
+    @ConditionalOnBean(TenantResolver.class)
+    SmartInitializingSingleton caffeineSessionPartitionsManagementExporter(
+        ObjectProvider<FindByIndexNameSessionRepository<?>> sessionRepository, ObjectProvider<MBeanExporter> mbeanExporter) {
+        return () -> mbeanExporter.ifAvailable((exporter) -> sessionRepository.ifAvailable((sessions) -> {
+            if (sessions instanceof PartitionedCaffeineSessionRepository repository) {
+                repository.addPartitionListener((tenant, partition) ->
+                    exporter.registerManagedResource(new CaffeineSessionRepositoryManagement(partition, tenant)));
+            }
+        }));
+    }
+
+    private static SessionAdmissionController admissionController(CaffeineSessionProperties.Admission admission) {
+        if (admission.getPermitsPerSecond() == null) {
+            return null;
+        }
+        int burst = (admission.getBurst() != null) ? admission.getBurst() : (int) Math.ceil(admission.getPermitsPerSecond());
+        return new SessionAdmissionController(admission.getPermitsPerSecond(), burst);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterBinder.class)
+    @ConditionalOnBooleanProperty("spring.session.caffeine.metrics.enabled")
+    static class CaffeineSessionMetricsConfiguration {
+
+        @Bean
+        MeterBinder caffeineSessionMeterBinder(ObjectProvider<FindByIndexNameSessionRepository<?>> sessionRepository) {
+            return (registry) -> sessionRepository.ifAvailable((sessions) -> {
+                if (sessions instanceof CaffeineIndexedSessionRepository repository) {
+                    bindTo(registry, repository, Tags.empty());
+                } else if (sessions instanceof PartitionedCaffeineSessionRepository repository) {
+                    // partitions are created on first use
+                    repository.addPartitionListener((tenant, partition) ->
+                        bindTo(registry, partition, Tags.of("tenant", tenant)));
+                }
+            });
+        }
+
+        private static void bindTo(MeterRegistry registry, CaffeineIndexedSessionRepository repository, Iterable<Tag> tags) {
+            Gauge.builder("spring.session.caffeine.sessions", repository, CaffeineIndexedSessionRepository::getSessionCount)
+                .tags(tags)
+                .description("The approximate number of stored sessions")
+                .register(registry);
+            FunctionCounter.builder("spring.session.caffeine.lookups", repository, (r) -> r.getStats().hitCount())
+                .tags(tags)
+                .tag("result", "hit")
+                .description("The number of session lookups that found a session")
+                .register(registry);
+            FunctionCounter.builder("spring.session.caffeine.lookups", repository, (r) -> r.getStats().missCount())
+                .tags(tags)
+                .tag("result", "miss")
+                .description("The number of session lookups that did not find a session")
+                .register(registry);
+            FunctionCounter.builder("spring.session.caffeine.evictions", repository, (r) -> r.getStats().evictionCount())
+                .tags(tags)
+                .description("The number of sessions evicted from the cache")
+                .register(registry);
+            FunctionCounter.builder("spring.session.caffeine.rejections", repository,
+                    CaffeineIndexedSessionRepository::getRejectedSessionCount)
+                .tags(tags)
+                .description("The number of new sessions not stored because of admission control")
+                .register(registry);
+        }
+    }
+}
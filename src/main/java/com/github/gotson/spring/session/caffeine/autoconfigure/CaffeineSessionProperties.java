@@ -0,0 +1,407 @@
+package com.github.gotson.spring.session.caffeine.autoconfigure;
+
+import com.github.gotson.spring.session.caffeine.AttributeChangeDetection;
+import com.github.gotson.spring.session.caffeine.EventDispatchMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DurationUnit;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration properties for Spring Session Caffeine.
+ */
+@ConfigurationProperties(prefix = "spring.session.caffeine")
+public class CaffeineSessionProperties {
+
+    /**
+     * Initial capacity of the sessions cache.
+     */
+    private Integer initialCapacity;
+
+    /**
+     * File where the peak number of sessions is persisted on shutdown, used to size the
+     * cache on the next start when initial-capacity is not set.
+     */
+    private Path sizingHintFile;
+
+    /**
+     * Whether to warm up the sessions cache on startup.
+     */
+    private boolean warmUp;
+
+    /**
+     * Maximum number of sessions. Cannot be combined with maximum-weight.
+     */
+    private Long maximumSize;
+
+    /**
+     * Maximum weight of sessions, each session weighing a rough estimate in bytes of the heap
+     * it retains. Cannot be combined with maximum-size.
+     */
+    private Long maximumWeight;
+
+    /**
+     * Maximum lifetime of sessions, measured from their creation time, regardless of their
+     * activity. If a duration suffix is not specified, seconds will be used.
+     */
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration maxSessionLifetime;
+
+    /**
+     * Whether new sessions are only stored once they hold at least one attribute.
+     */
+    private boolean lazySessionCreation;
+
+    /**
+     * Whether to store sessions in a compact form that uses less heap.
+     */
+    private boolean compactStorage;
+
+    /**
+     * Idle time after which the attributes of stored sessions are serialized and
+     * compressed in the background. If a duration suffix is not specified, seconds will
+     * be used.
+     */
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration coldSessionThreshold;
+
+    /**
+     * Whether to deduplicate attribute names, principal names and values of indexed
+     * attributes of stored sessions.
+     */
+    private boolean stringDeduplication;
+
+    /**
+     * Maximum number of sessions of a single principal. The least recently accessed
+     * sessions of a principal are deleted beyond that number.
+     */
+    private Integer maximumSessionsPerPrincipal;
+
+    /**
+     * How attribute writes are detected as changes.
+     */
+    private AttributeChangeDetection attributeChangeDetection = AttributeChangeDetection.ALWAYS;
+
+    /**
+     * Executor used for the maintenance of the cache and to publish removal events.
+     */
+    private ExecutorType executor = ExecutorType.COMMON_POOL;
+
+    /**
+     * Scheduler used to promptly remove expired sessions.
+     */
+    private SchedulerType scheduler = SchedulerType.NONE;
+
+    /**
+     * How session events are dispatched.
+     */
+    private EventDispatchMode eventDispatch = EventDispatchMode.DEFAULT;
+
+    /**
+     * Names of session attributes that can be used as index names to find sessions, in
+     * addition to the principal name.
+     */
+    private List<String> indexNames = new ArrayList<>();
+
+    private final ExpiredEvents expiredEvents = new ExpiredEvents();
+
+    private final Admission admission = new Admission();
+
+    private final Metrics metrics = new Metrics();
+
+    private final Tenants tenants = new Tenants();
+
+    public Integer getInitialCapacity() {
+        return this.initialCapacity;
+    }
+
+    public void setInitialCapacity(Integer initialCapacity) {
+        this.initialCapacity = initialCapacity;
+    }
+
+    public Path getSizingHintFile() {
+        return this.sizingHintFile;
+    }
+
+    public void setSizingHintFile(Path sizingHintFile) {
+        this.sizingHintFile = sizingHintFile;
+    }
+
+    public boolean isWarmUp() {
+        return this.warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public Long getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    public void setMaximumSize(Long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Long getMaximumWeight() {
+        return this.maximumWeight;
+    }
+
+    public void setMaximumWeight(Long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public Duration getMaxSessionLifetime() {
+        return this.maxSessionLifetime;
+    }
+
+    public void setMaxSessionLifetime(Duration maxSessionLifetime) {
+        this.maxSessionLifetime = maxSessionLifetime;
+    }
+
+    public boolean isLazySessionCreation() {
+        return this.lazySessionCreation;
+    }
+
+    public void setLazySessionCreation(boolean lazySessionCreation) {
+        this.lazySessionCreation = lazySessionCreation;
+    }
+
+    public boolean isCompactStorage() {
+        return this.compactStorage;
+    }
+
+    public void setCompactStorage(boolean compactStorage) {
+        this.compactStorage = compactStorage;
+    }
+
+    public Duration getColdSessionThreshold() {
+        return this.coldSessionThreshold;
+    }
+
+    public void setColdSessionThreshold(Duration coldSessionThreshold) {
+        this.coldSessionThreshold = coldSessionThreshold;
+    }
+
+    public boolean isStringDeduplication() {
+        return this.stringDeduplication;
+    }
+
+    public void setStringDeduplication(boolean stringDeduplication) {
+        this.stringDeduplication = stringDeduplication;
+    }
+
+    public Integer getMaximumSessionsPerPrincipal() {
+        return this.maximumSessionsPerPrincipal;
+    }
+
+    public void setMaximumSessionsPerPrincipal(Integer maximumSessionsPerPrincipal) {
+        this.maximumSessionsPerPrincipal = maximumSessionsPerPrincipal;
+    }
+
+    public AttributeChangeDetection getAttributeChangeDetection() {
+        return this.attributeChangeDetection;
+    }
+
+    public void setAttributeChangeDetection(AttributeChangeDetection attributeChangeDetection) {
+        this.attributeChangeDetection = attributeChangeDetection;
+    }
+
+    public ExecutorType getExecutor() {
+        return this.executor;
+    }
+
+    public void setExecutor(ExecutorType executor) {
+        this.executor = executor;
+    }
+
+    public SchedulerType getScheduler() {
+        return this.scheduler;
+    }
+
+    public void setScheduler(SchedulerType scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public EventDispatchMode getEventDispatch() {
+        return this.eventDispatch;
+    }
+
+    public void setEventDispatch(EventDispatchMode eventDispatch) {
+        this.eventDispatch = eventDispatch;
+    }
+
+    public List<String> getIndexNames() {
+        return this.indexNames;
+    }
+
+    public void setIndexNames(List<String> indexNames) {
+        this.indexNames = indexNames;
+    }
+
+    public ExpiredEvents getExpiredEvents() {
+        return this.expiredEvents;
+    }
+
+    public Admission getAdmission() {
+        return this.admission;
+    }
+
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+
+    public Tenants getTenants() {
+        return this.tenants;
+    }
+
+    public static class ExpiredEvents {
+
+        /**
+         * Whether expired session events only carry the id, timestamps, principal name and
+         * selected attributes of the session, so that expired sessions can be freed before
+         * the events are delivered.
+         */
+        private boolean lightweight;
+
+        /**
+         * Names of session attributes kept in lightweight expired session events.
+         */
+        private List<String> attributeNames = new ArrayList<>();
+
+        public boolean isLightweight() {
+            return this.lightweight;
+        }
+
+        public void setLightweight(boolean lightweight) {
+            this.lightweight = lightweight;
+        }
+
+        public List<String> getAttributeNames() {
+            return this.attributeNames;
+        }
+
+        public void setAttributeNames(List<String> attributeNames) {
+            this.attributeNames = attributeNames;
+        }
+    }
+
+    public static class Admission {
+
+        /**
+         * Sustained rate of new sessions stored per second. New sessions beyond that rate
+         * are served for the current request only. Unlimited when not set.
+         */
+        private Double permitsPerSecond;
+
+        /**
+         * Number of new sessions that can be stored at once. Defaults to the number of
+         * permits per second.
+         */
+        private Integer burst;
+
+        public Double getPermitsPerSecond() {
+            return this.permitsPerSecond;
+        }
+
+        public void setPermitsPerSecond(Double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        public Integer getBurst() {
+            return this.burst;
+        }
+
+        public void setBurst(Integer burst) {
+            this.burst = burst;
+        }
+    }
+
+    public static class Tenants {
+
+        /**
+         * Maximum number of sessions of all tenants, shared between them in proportion to
+         * their weight, when sessions are partitioned by a TenantResolver bean. Each
+         * partition is only bounded by maximum-size when not set.
+         */
+        private Long maximumSize;
+
+        /**
+         * Weight of tenants in the sharing of the maximum size, fixed when their partition is
+         * created. Tenants without a weight share a weight of 1.
+         */
+        private Map<String, Integer> weights = new LinkedHashMap<>();
+
+        public Long getMaximumSize() {
+            return this.maximumSize;
+        }
+
+        public void setMaximumSize(Long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Map<String, Integer> getWeights() {
+            return this.weights;
+        }
+
+        public void setWeights(Map<String, Integer> weights) {
+            this.weights = weights;
+        }
+    }
+
+    public static class Metrics {
+
+        /**
+         * Whether to record cache statistics, and expose them as metrics when Micrometer is
+         * available.
+         */
+        private boolean enabled;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * Executor used by the sessions cache.
+     */
+    public enum ExecutorType {
+
+        /**
+         * Caffeine's default, the common {@link java.util.concurrent.ForkJoinPool}.
+         */
+        COMMON_POOL,
+
+        /**
+         * Run on the calling thread.
+         */
+        DIRECT
+    }
+
+    /**
+     * Scheduler used by the sessions cache.
+     */
+    public enum SchedulerType {
+
+        /**
+         * No scheduler, expired sessions are removed during other cache operations.
+         */
+        NONE,
+
+        /**
+         * The JVM-wide scheduling thread, as provided by
+         * {@link com.github.benmanes.caffeine.cache.Scheduler#systemScheduler()}.
+         */
+        SYSTEM
+    }
+}
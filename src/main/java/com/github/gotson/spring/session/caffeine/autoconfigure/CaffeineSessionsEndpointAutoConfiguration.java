@@ -0,0 +1,49 @@
+package com.github.gotson.spring.session.caffeine.autoconfigure;
+
+import com.github.gotson.spring.session.caffeine.CaffeineSessionRepositoryManagement;
+import com.github.gotson.spring.session.caffeine.PartitionedCaffeineSessionRepository;
+import com.github.gotson.spring.session.caffeine.TenantResolver;
+import com.github.gotson.spring.session.caffeine.actuate.CaffeineSessionPartitionsEndpoint;
+import com.github.gotson.spring.session.caffeine.actuate.CaffeineSessionsEndpoint;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.util.Assert;
+
+/**
+ * {@link org.springframework.boot.autoconfigure.EnableAutoConfiguration Auto-configuration}
+ * for the {@link CaffeineSessionsEndpoint}, or the {@link CaffeineSessionPartitionsEndpoint}
+ * when sessions are partitioned by tenant, when Spring Boot Actuator is available and the
+ * endpoint is exposed.
+ */
+@AutoConfiguration(after = CaffeineSessionAutoConfiguration.class)
+@ConditionalOnClass({Endpoint.class, ConditionalOnAvailableEndpoint.class})
+public class CaffeineSessionsEndpointAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(CaffeineSessionRepositoryManagement.class)
+    @ConditionalOnAvailableEndpoint
+    CaffeineSessionsEndpoint caffeineSessionsEndpoint(CaffeineSessionRepositoryManagement management) {
+        return new CaffeineSessionsEndpoint(management);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean({CaffeineSessionsEndpoint.class, CaffeineSessionPartitionsEndpoint.class})
+    @ConditionalOnBean(TenantResolver.class)
+    @ConditionalOnAvailableEndpoint
+    CaffeineSessionPartitionsEndpoint caffeineSessionPartitionsEndpoint(
+        ObjectProvider<FindByIndexNameSessionRepository<?>> sessionRepository) {
+        // the session repository bean is declared with its interface type
+        FindByIndexNameSessionRepository<?> sessions = sessionRepository.getObject();
+        Assert.state(sessions instanceof PartitionedCaffeineSessionRepository,
+            "The session repository is not a PartitionedCaffeineSessionRepository");
+        return new CaffeineSessionPartitionsEndpoint((PartitionedCaffeineSessionRepository) sessions);
+    }
+}
@@ -1,6 +1,8 @@
 package com.github.gotson.spring.session.caffeine.config.annotation.web.http;
 
 import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository;
+import com.github.gotson.spring.session.caffeine.PartitionedCaffeineSessionRepository;
+import com.github.gotson.spring.session.caffeine.TenantResolver;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
@@ -13,6 +15,7 @@ import org.springframework.session.FindByIndexNameSessionRepository;
 import org.springframework.session.IndexResolver;
 import org.springframework.session.MapSession;
 import org.springframework.session.Session;
+import org.springframework.session.SessionIdGenerator;
 import org.springframework.session.config.SessionRepositoryCustomizer;
 import org.springframework.session.config.annotation.web.http.SpringHttpSessionConfiguration;
 import org.springframework.session.web.http.SessionRepositoryFilter;
@@ -25,6 +28,11 @@ import java.util.stream.Collectors;
  * Exposes the {@link SessionRepositoryFilter} as a bean named
  * {@code springSessionRepositoryFilter}.
  *
+ * <p>
+ * If a {@link TenantResolver} bean is defined, the session repository is a
+ * {@link PartitionedCaffeineSessionRepository}, whose partitions are configured as the
+ * single repository would be.
+ *
  * @see EnableCaffeineHttpSession
  */
 @Configuration(proxyBeanMethods = false)
@@ -32,14 +40,27 @@ public class CaffeineHttpSessionConfiguration extends SpringHttpSessionConfigura
 
     private Integer maxInactiveIntervalInSeconds = MapSession.DEFAULT_MAX_INACTIVE_INTERVAL_SECONDS;
 
+    private Integer maxSessionLifetimeInSeconds;
+
+    private boolean lazySessionCreation;
+
     private ApplicationEventPublisher applicationEventPublisher;
 
     private IndexResolver<Session> indexResolver;
 
+    private SessionIdGenerator sessionIdGenerator;
+
     private List<SessionRepositoryCustomizer<CaffeineIndexedSessionRepository>> sessionRepositoryCustomizers;
 
+    private TenantResolver tenantResolver;
+
+    private List<SessionRepositoryCustomizer<PartitionedCaffeineSessionRepository>> partitionedSessionRepositoryCustomizers;
+
     @Bean
     public FindByIndexNameSessionRepository<?> sessionRepository() {
+        if (this.tenantResolver != null) {
+            return createPartitionedCaffeineSessionRepository();
+        }
         return createCaffeineSessionRepository();
     }
 
@@ -47,6 +68,14 @@ public class CaffeineHttpSessionConfiguration extends SpringHttpSessionConfigura
         this.maxInactiveIntervalInSeconds = maxInactiveIntervalInSeconds;
     }
 
+    public void setMaxSessionLifetimeInSeconds(int maxSessionLifetimeInSeconds) {
+        this.maxSessionLifetimeInSeconds = maxSessionLifetimeInSeconds;
+    }
+
+    public void setLazySessionCreation(boolean lazySessionCreation) {
+        this.lazySessionCreation = lazySessionCreation;
+    }
+
     @Autowired
     public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
         this.applicationEventPublisher = applicationEventPublisher;
@@ -57,18 +86,49 @@ public class CaffeineHttpSessionConfiguration extends SpringHttpSessionConfigura
         this.indexResolver = indexResolver;
     }
 
+    @Autowired(required = false)
+    public void setSessionIdGenerator(SessionIdGenerator sessionIdGenerator) {
+        this.sessionIdGenerator = sessionIdGenerator;
+    }
+
     @Autowired(required = false)
     public void setSessionRepositoryCustomizer(
         ObjectProvider<SessionRepositoryCustomizer<CaffeineIndexedSessionRepository>> sessionRepositoryCustomizers) {
         this.sessionRepositoryCustomizers = sessionRepositoryCustomizers.orderedStream().collect(Collectors.toList());
     }
 
+    @Autowired(required = false)
+    public void setTenantResolver(TenantResolver tenantResolver) {
+        this.tenantResolver = tenantResolver;
+    }
+
+    @Autowired(required = false)
+    public void setPartitionedSessionRepositoryCustomizer(
+        ObjectProvider<SessionRepositoryCustomizer<PartitionedCaffeineSessionRepository>> sessionRepositoryCustomizers) {
+        this.partitionedSessionRepositoryCustomizers = sessionRepositoryCustomizers.orderedStream()
+            .collect(Collectors.toList());
+    }
+
     @Override
     public void setImportMetadata(AnnotationMetadata importMetadata) {
         Map<String, Object> attributeMap = importMetadata
             .getAnnotationAttributes(EnableCaffeineHttpSession.class.getName());
         AnnotationAttributes attributes = AnnotationAttributes.fromMap(attributeMap);
+        if (attributes == null) {
+            // imported without @EnableCaffeineHttpSession, for instance by auto-configuration
+            return;
+        }
         this.maxInactiveIntervalInSeconds = attributes.getNumber("maxInactiveIntervalInSeconds");
+        this.maxSessionLifetimeInSeconds = attributes.getNumber("maxSessionLifetimeInSeconds");
+        this.lazySessionCreation = attributes.getBoolean("lazySessionCreation");
+    }
+
+    private PartitionedCaffeineSessionRepository createPartitionedCaffeineSessionRepository() {
+        PartitionedCaffeineSessionRepository sessionRepository = new PartitionedCaffeineSessionRepository(
+            this.tenantResolver, this::createCaffeineSessionRepository);
+        this.partitionedSessionRepositoryCustomizers
+            .forEach((sessionRepositoryCustomizer) -> sessionRepositoryCustomizer.customize(sessionRepository));
+        return sessionRepository;
     }
 
     private CaffeineIndexedSessionRepository createCaffeineSessionRepository() {
@@ -77,7 +137,12 @@ public class CaffeineHttpSessionConfiguration extends SpringHttpSessionConfigura
         if (this.indexResolver != null) {
             sessionRepository.setIndexResolver(this.indexResolver);
         }
+        if (this.sessionIdGenerator != null) {
+            sessionRepository.setSessionIdGenerator(this.sessionIdGenerator);
+        }
         sessionRepository.setDefaultMaxInactiveInterval(this.maxInactiveIntervalInSeconds);
+        sessionRepository.setMaxSessionLifetime(this.maxSessionLifetimeInSeconds);
+        sessionRepository.setLazySessionCreation(this.lazySessionCreation);
         this.sessionRepositoryCustomizers
             .forEach((sessionRepositoryCustomizer) -> sessionRepositoryCustomizer.customize(sessionRepository));
         return sessionRepository;
@@ -17,6 +17,10 @@ import java.lang.annotation.Target;
  * {@link SessionRepositoryFilter} as a bean named {@code springSessionRepositoryFilter}
  * and backed by Caffeine.
  * <p>
+ * Sessions are partitioned by tenant if a
+ * {@link com.github.gotson.spring.session.caffeine.TenantResolver TenantResolver} bean is
+ * defined.
+ * <p>
  * More advanced configurations can extend {@link CaffeineHttpSessionConfiguration}
  * instead.
  *
@@ -36,4 +40,22 @@ public @interface EnableCaffeineHttpSession {
      * @return the seconds a session can be inactive before expiring
      */
     int maxInactiveIntervalInSeconds() default MapSession.DEFAULT_MAX_INACTIVE_INTERVAL_SECONDS;
+
+    /**
+     * The maximum lifetime of sessions in seconds, measured from their creation time.
+     * Sessions expire when they reach this age even if they are still active. By default,
+     * it is set to -1, meaning sessions only expire after being inactive.
+     *
+     * @return the seconds a session can live before expiring, regardless of its activity
+     */
+    int maxSessionLifetimeInSeconds() default -1;
+
+    /**
+     * Whether new sessions are only stored once they hold at least one attribute. Empty
+     * sessions are then never stored, and do not publish a {@code SessionCreatedEvent}.
+     * By default, it is set to {@code false}.
+     *
+     * @return whether the storage of new sessions is deferred
+     */
+    boolean lazySessionCreation() default false;
 }
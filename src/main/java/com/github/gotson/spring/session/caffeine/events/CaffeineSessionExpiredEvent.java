@@ -0,0 +1,55 @@
+package com.github.gotson.spring.session.caffeine.events;
+
+import org.springframework.session.Session;
+import org.springframework.session.events.SessionExpiredEvent;
+
+/**
+ * A {@link SessionExpiredEvent} that carries the reason why the session expired.
+ */
+@SuppressWarnings("serial")
+public class CaffeineSessionExpiredEvent extends SessionExpiredEvent {
+
+    private final Reason reason;
+
+    /**
+     * Create a new {@link CaffeineSessionExpiredEvent}.
+     *
+     * @param source  the source of the event
+     * @param session the session that expired
+     * @param reason  the reason why the session expired
+     */
+    public CaffeineSessionExpiredEvent(Object source, Session session, Reason reason) {
+        super(source, session);
+        this.reason = reason;
+    }
+
+    /**
+     * Get the reason why the session expired.
+     *
+     * @return the reason why the session expired
+     */
+    public Reason getReason() {
+        return this.reason;
+    }
+
+    /**
+     * The reason why a session expired.
+     */
+    public enum Reason {
+
+        /**
+         * The session was inactive for longer than its maximum inactive interval.
+         */
+        INACTIVITY,
+
+        /**
+         * The session reached its maximum lifetime, regardless of its activity.
+         */
+        MAX_LIFETIME,
+
+        /**
+         * The session was evicted from the cache before it expired.
+         */
+        EVICTION
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.gotson.spring.session.caffeine.events;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.session.Session;
+
+/**
+ * Published when the id of a stored session changed, for instance to protect against
+ * session fixation on login. The session is not deleted nor created, so this event is
+ * not an {@link org.springframework.session.events.AbstractSessionEvent}.
+ */
+@SuppressWarnings("serial")
+public class SessionIdChangedEvent extends ApplicationEvent {
+
+    private final Session session;
+
+    private final String oldSessionId;
+
+    private final String newSessionId;
+
+    /**
+     * Create a new {@link SessionIdChangedEvent}.
+     *
+     * @param source       the source of the event
+     * @param session      the session, with its new id
+     * @param oldSessionId the previous id of the session
+     */
+    public SessionIdChangedEvent(Object source, Session session, String oldSessionId) {
+        super(source);
+        this.session = session;
+        this.oldSessionId = oldSessionId;
+        this.newSessionId = session.getId();
+    }
+
+    /**
+     * Get the session, with its new id.
+     *
+     * @param <S> the type of session
+     * @return the session
+     */
+    @SuppressWarnings("unchecked")
+    public <S extends Session> S getSession() {
+        return (S) this.session;
+    }
+
+    /**
+     * Get the previous id of the session.
+     *
+     * @return the previous id of the session
+     */
+    public String getOldSessionId() {
+        return this.oldSessionId;
+    }
+
+    /**
+     * Get the new id of the session.
+     *
+     * @return the new id of the session
+     */
+    public String getNewSessionId() {
+        return this.newSessionId;
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.gotson.spring.session.caffeine.soak;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Records request latencies of a single thread, keeping a uniform sample of bounded size
+ * so that long runs do not grow the heap they measure.
+ */
+final class LatencyRecorder {
+
+    private static final int MAXIMUM_SAMPLES = 1 << 18;
+
+    private final long[] samples = new long[MAXIMUM_SAMPLES];
+
+    private final SplittableRandom random;
+
+    private long count;
+
+    private long max;
+
+    LatencyRecorder(SplittableRandom random) {
+        this.random = random;
+    }
+
+    void record(long nanos) {
+        if (this.count < MAXIMUM_SAMPLES) {
+            this.samples[(int) this.count] = nanos;
+        } else {
+            long index = this.random.nextLong(this.count + 1);
+            if (index < MAXIMUM_SAMPLES) {
+                this.samples[(int) index] = nanos;
+            }
+        }
+        this.count++;
+        this.max = Math.max(this.max, nanos);
+    }
+
+    long count() {
+        return this.count;
+    }
+
+    /**
+     * Merge the samples of several recorders.
+     */
+    static Percentiles percentiles(List<LatencyRecorder> recorders) {
+        long[] merged = recorders.stream()
+            .flatMapToLong((recorder) -> Arrays.stream(recorder.samples, 0, (int) Math.min(recorder.count, MAXIMUM_SAMPLES)))
+            .sorted()
+            .toArray();
+        long max = recorders.stream().mapToLong((recorder) -> recorder.max).max().orElse(0);
+        return new Percentiles(percentile(merged, 0.5), percentile(merged, 0.99), percentile(merged, 0.999), max);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * Latency percentiles in nanoseconds.
+     */
+    record Percentiles(long p50, long p99, long p999, long max) {
+    }
+}
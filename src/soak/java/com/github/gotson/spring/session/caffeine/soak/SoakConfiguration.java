@@ -0,0 +1,49 @@
+package com.github.gotson.spring.session.caffeine.soak;
+
+import com.github.gotson.spring.session.caffeine.AttributeChangeDetection;
+import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository;
+
+import java.util.function.Consumer;
+
+/**
+ * Repository configurations compared by the soak test.
+ */
+enum SoakConfiguration {
+
+    /**
+     * The defaults of the repository.
+     */
+    DEFAULT((repository) -> {
+    }),
+
+    /**
+     * Compact storage, string deduplication and identity change detection, to reduce heap
+     * usage and copies.
+     */
+    COMPACT((repository) -> {
+        repository.setCompactStorage(true);
+        repository.setStringDeduplication(true);
+        repository.setAttributeChangeDetection(AttributeChangeDetection.IDENTITY);
+    }),
+
+    /**
+     * Expired session events that only retain the id, timestamps and principal name.
+     */
+    LIGHTWEIGHT_EVENTS((repository) -> repository.setLightweightExpiredEvents(true)),
+
+    /**
+     * A maximum number of sessions below the number of clients, so that sessions are
+     * evicted by size as well as by inactivity.
+     */
+    BOUNDED((repository) -> repository.setMaximumSize(5_000L));
+
+    private final Consumer<CaffeineIndexedSessionRepository> customizer;
+
+    SoakConfiguration(Consumer<CaffeineIndexedSessionRepository> customizer) {
+        this.customizer = customizer;
+    }
+
+    void customize(CaffeineIndexedSessionRepository repository) {
+        this.customizer.accept(repository);
+    }
+}
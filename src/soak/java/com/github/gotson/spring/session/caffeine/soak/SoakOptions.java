@@ -0,0 +1,52 @@
+package com.github.gotson.spring.session.caffeine.soak;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Options of a soak run, read from {@code soak.*} system properties.
+ *
+ * @param duration       the measured duration of each configuration
+ * @param threads        the number of threads sending requests
+ * @param clients        the number of simulated clients
+ * @param idleTimeout    the maximum inactive interval of sessions
+ * @param seed           the seed of the random request mix
+ * @param configurations the repository configurations to compare
+ */
+record SoakOptions(
+    Duration duration,
+    int threads,
+    int clients,
+    Duration idleTimeout,
+    long seed,
+    List<SoakConfiguration> configurations) {
+
+    static SoakOptions fromSystemProperties() {
+        return new SoakOptions(
+            Duration.parse(System.getProperty("soak.duration", "PT1M")),
+            Integer.getInteger("soak.threads", Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger("soak.clients", 20_000),
+            Duration.parse(System.getProperty("soak.idle-timeout", "PT30S")),
+            Long.getLong("soak.seed", 42),
+            configurations(System.getProperty("soak.configurations")));
+    }
+
+    /**
+     * The duration of the warm-up before each measured run, whose results are discarded.
+     */
+    Duration warmUp() {
+        Duration tenth = this.duration.dividedBy(10);
+        return (tenth.compareTo(Duration.ofSeconds(30)) < 0) ? tenth : Duration.ofSeconds(30);
+    }
+
+    private static List<SoakConfiguration> configurations(String names) {
+        if (names == null || names.isBlank()) {
+            return List.of(SoakConfiguration.values());
+        }
+        return Arrays.stream(names.split(","))
+            .map((name) -> SoakConfiguration.valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_')))
+            .toList();
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.gotson.spring.session.caffeine.soak;
+
+import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository;
+import com.github.gotson.spring.session.caffeine.config.annotation.web.http.EnableCaffeineHttpSession;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.events.AbstractSessionEvent;
+import org.springframework.session.events.SessionCreatedEvent;
+import org.springframework.session.events.SessionExpiredEvent;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Soak test of the repository through the {@link SessionRepositoryFilter}, configured
+ * with {@link EnableCaffeineHttpSession}, using mock servlet requests.
+ *
+ * <p>
+ * Each {@link SoakConfiguration} is warmed up, then measured for the configured duration
+ * in a fresh application context. The throughput, latency percentiles, allocation rate,
+ * GC activity and heap usage of each configuration are reported on the standard output.
+ * Run it with {@code ./gradlew soak}; see {@link SoakOptions} for the options, passed as
+ * {@code -Psoak.<option>=<value>}.
+ */
+public final class SoakTest {
+
+    private SoakTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        SoakOptions options = SoakOptions.fromSystemProperties();
+        System.out.printf("Soak test: %s per configuration after a %s warm-up, %d threads, %d clients, idle timeout %s, seed %d%n",
+            options.duration(), options.warmUp(), options.threads(), options.clients(), options.idleTimeout(), options.seed());
+        System.out.printf("%-20s %12s %10s %9s %9s %9s %9s %10s %7s %9s %10s %10s %9s %9s %9s%n",
+            "configuration", "requests", "req/s", "p50 us", "p99 us", "p99.9 us", "max us", "alloc MB/s",
+            "gc", "gc ms", "peak MB", "live MB", "sessions", "created", "expired");
+        for (SoakConfiguration configuration : options.configurations()) {
+            run(configuration, options);
+        }
+    }
+
+    private static void run(SoakConfiguration configuration, SoakOptions options) throws Exception {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(SoakConfiguration.class, () -> configuration);
+            context.registerBean(SoakOptions.class, () -> options);
+            context.register(SoakSessionConfig.class);
+            context.refresh();
+            CaffeineIndexedSessionRepository repository = context.getBean(CaffeineIndexedSessionRepository.class);
+            SessionEventCounter events = context.getBean(SessionEventCounter.class);
+            try (Workload workload = new Workload(context.getBean(SessionRepositoryFilter.class), repository, options)) {
+                run(configuration, repository, events, workload, options);
+            }
+        }
+    }
+
+    private static void run(SoakConfiguration configuration, CaffeineIndexedSessionRepository repository,
+                            SessionEventCounter events, Workload workload, SoakOptions options) throws Exception {
+        workload.run(options.warmUp(), 0);
+        events.reset();
+        System.gc();
+        Snapshot before = Snapshot.take();
+        List<LatencyRecorder> recorders = workload.run(options.duration(), 1);
+        Snapshot after = Snapshot.take();
+        repository.cleanUp();
+        System.gc();
+        long liveHeap = heapPools().stream().mapToLong((pool) -> pool.getUsage().getUsed()).sum();
+
+        double seconds = (after.nanoTime - before.nanoTime) / 1e9;
+        long requests = recorders.stream().mapToLong(LatencyRecorder::count).sum();
+        LatencyRecorder.Percentiles latencies = LatencyRecorder.percentiles(recorders);
+        long allocated = after.allocatedBytesSince(before);
+        System.out.printf("%-20s %12d %10.0f %9.1f %9.1f %9.1f %9.1f %10s %7d %9d %10.1f %10.1f %9d %9d %9d%n",
+            configuration.name().toLowerCase().replace('_', '-'),
+            requests,
+            requests / seconds,
+            latencies.p50() / 1e3,
+            latencies.p99() / 1e3,
+            latencies.p999() / 1e3,
+            latencies.max() / 1e3,
+            (allocated >= 0) ? String.format("%.1f", allocated / seconds / (1 << 20)) : "n/a",
+            after.gcCount - before.gcCount,
+            after.gcMillis - before.gcMillis,
+            after.peakHeap / (double) (1 << 20),
+            liveHeap / (double) (1 << 20),
+            repository.getSessionCount(),
+            events.created.sum(),
+            events.expired.sum());
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter((pool) -> pool.getType() == MemoryType.HEAP)
+            .toList();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableCaffeineHttpSession
+    static class SoakSessionConfig {
+
+        @Bean
+        SessionRepositoryCustomizer<CaffeineIndexedSessionRepository> soakCustomizer(SoakConfiguration configuration,
+                                                                                    SoakOptions options) {
+            return (repository) -> {
+                repository.setDefaultMaxInactiveInterval(Math.toIntExact(options.idleTimeout().toSeconds()));
+                configuration.customize(repository);
+            };
+        }
+
+        @Bean
+        SessionEventCounter sessionEventCounter() {
+            return new SessionEventCounter();
+        }
+    }
+
+    /**
+     * Counts session events, as an application listening to them would.
+     */
+    static final class SessionEventCounter implements ApplicationListener<AbstractSessionEvent> {
+
+        private final LongAdder created = new LongAdder();
+
+        private final LongAdder expired = new LongAdder();
+
+        @Override
+        public void onApplicationEvent(AbstractSessionEvent event) {
+            if (event instanceof SessionCreatedEvent) {
+                this.created.increment();
+            } else if (event instanceof SessionExpiredEvent) {
+                this.expired.increment();
+            }
+        }
+
+        void reset() {
+            this.created.reset();
+            this.expired.reset();
+        }
+    }
+
+    /**
+     * JVM statistics at a point in time. The peak heap usage is reset when taken.
+     */
+    private static final class Snapshot {
+
+        private long nanoTime;
+
+        private long gcCount;
+
+        private long gcMillis;
+
+        private long peakHeap;
+
+        private final Map<Long, Long> allocatedBytes = new HashMap<>();
+
+        static Snapshot take() {
+            Snapshot snapshot = new Snapshot();
+            snapshot.nanoTime = System.nanoTime();
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                snapshot.gcCount += Math.max(0, collector.getCollectionCount());
+                snapshot.gcMillis += Math.max(0, collector.getCollectionTime());
+            }
+            for (MemoryPoolMXBean pool : heapPools()) {
+                snapshot.peakHeap += pool.getPeakUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                long[] ids = threads.getAllThreadIds();
+                long[] bytes = threads.getThreadAllocatedBytes(ids);
+                for (int i = 0; i < ids.length; i++) {
+                    if (bytes[i] >= 0) {
+                        snapshot.allocatedBytes.put(ids[i], bytes[i]);
+                    }
+                }
+            }
+            return snapshot;
+        }
+
+        /**
+         * The bytes allocated by the threads alive at the end, approximately, or -1 if not
+         * supported by the JVM.
+         */
+        long allocatedBytesSince(Snapshot before) {
+            if (this.allocatedBytes.isEmpty()) {
+                return -1;
+            }
+            return this.allocatedBytes.entrySet().stream()
+                .mapToLong((entry) -> entry.getValue() - before.allocatedBytes.getOrDefault(entry.getKey(), 0L))
+                .sum();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.github.gotson.spring.session.caffeine.soak;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.session.FindByIndexNameSessionRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sends a realistic mix of requests through the {@code SessionRepositoryFilter}, on behalf
+ * of simulated clients.
+ *
+ * <p>
+ * Each thread owns a disjoint set of clients, which keep their session cookie between
+ * requests. Clients browse, fill a cart, log in and out, rotate their session id and look
+ * up the sessions of their principal. From time to time a client goes away for longer
+ * than the idle timeout, so that its session expires, or is replaced by a new client.
+ */
+final class Workload implements AutoCloseable {
+
+    private static final String SESSION_COOKIE = "SESSION";
+
+    private static final String SPRING_SECURITY_CONTEXT = "SPRING_SECURITY_CONTEXT";
+
+    private static final String CART = "cart";
+
+    private static final int MAXIMUM_CART_ITEMS = 20;
+
+    private static final int USERS = 1_000;
+
+    private final Filter filter;
+
+    private final FindByIndexNameSessionRepository<?> repository;
+
+    private final SoakOptions options;
+
+    private final Client[][] clients;
+
+    /**
+     * Kept across runs, so that the allocations of its threads can be measured.
+     */
+    private final ExecutorService executor;
+
+    Workload(Filter filter, FindByIndexNameSessionRepository<?> repository, SoakOptions options) {
+        this.filter = filter;
+        this.repository = repository;
+        this.options = options;
+        this.clients = new Client[options.threads()][];
+        int clientsPerThread = Math.max(1, options.clients() / options.threads());
+        for (int t = 0; t < options.threads(); t++) {
+            this.clients[t] = new Client[clientsPerThread];
+            for (int c = 0; c < clientsPerThread; c++) {
+                this.clients[t][c] = new Client("user-" + ((t * clientsPerThread + c) % USERS));
+            }
+        }
+        this.executor = Executors.newFixedThreadPool(options.threads());
+    }
+
+    /**
+     * Send requests from all threads for the given duration.
+     *
+     * @param duration the duration of the run
+     * @param round    distinguishes the random sequence of successive runs
+     * @return the latency recorders of the threads
+     */
+    List<LatencyRecorder> run(Duration duration, int round) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<LatencyRecorder>> futures = new ArrayList<>();
+        for (int t = 0; t < this.options.threads(); t++) {
+            Client[] threadClients = this.clients[t];
+            SplittableRandom random = new SplittableRandom(this.options.seed() + 31L * round + t);
+            futures.add(this.executor.submit(() -> runThread(threadClients, random, deadline)));
+        }
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        for (Future<LatencyRecorder> future : futures) {
+            recorders.add(future.get());
+        }
+        return recorders;
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+    private LatencyRecorder runThread(Client[] threadClients, SplittableRandom random, long deadline)
+        throws IOException, ServletException {
+        LatencyRecorder recorder = new LatencyRecorder(random.split());
+        long absenceNanos = this.options.idleTimeout().toNanos() * 2;
+        while (System.nanoTime() < deadline) {
+            long now = System.nanoTime();
+            Client client = pickClient(threadClients, random, now);
+            Action action = Action.pick(random);
+            if (action == Action.NEW_CLIENT) {
+                client.cookie = null;
+                client.loggedIn = false;
+            }
+
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+            if (client.cookie != null) {
+                request.setCookies(new Cookie(SESSION_COOKIE, client.cookie));
+            }
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            long start = System.nanoTime();
+            this.filter.doFilter(request, response,
+                (req, res) -> perform(action, (HttpServletRequest) req, client, random));
+            recorder.record(System.nanoTime() - start);
+
+            Cookie cookie = response.getCookie(SESSION_COOKIE);
+            if (cookie != null) {
+                client.cookie = (cookie.getMaxAge() == 0) ? null : cookie.getValue();
+            }
+            if (random.nextInt(100) < 2) {
+                // away for longer than the idle timeout on average, its session expires
+                client.awayUntil = now + (long) (-Math.log(1 - random.nextDouble()) * absenceNanos);
+            }
+        }
+        return recorder;
+    }
+
+    private static Client pickClient(Client[] threadClients, SplittableRandom random, long now) {
+        Client client = threadClients[random.nextInt(threadClients.length)];
+        for (int i = 0; i < 8 && client.awayUntil > now; i++) {
+            client = threadClients[random.nextInt(threadClients.length)];
+        }
+        return client;
+    }
+
+    private void perform(Action action, HttpServletRequest request, Client client, SplittableRandom random) {
+        switch (action) {
+            case BROWSE -> {
+                HttpSession session = request.getSession(false);
+                if (session != null) {
+                    session.getAttribute(CART);
+                    session.getAttribute(SPRING_SECURITY_CONTEXT);
+                }
+            }
+            case ADD_TO_CART -> {
+                HttpSession session = request.getSession();
+                @SuppressWarnings("unchecked")
+                List<byte[]> cart = (List<byte[]>) session.getAttribute(CART);
+                List<byte[]> updated = (cart != null) ? new ArrayList<>(cart) : new ArrayList<>();
+                if (updated.size() >= MAXIMUM_CART_ITEMS) {
+                    updated.remove(0);
+                }
+                updated.add(new byte[64 + random.nextInt(960)]);
+                session.setAttribute(CART, updated);
+            }
+            case LOGIN -> {
+                if (client.loggedIn) {
+                    return;
+                }
+                HttpSession session = request.getSession();
+                session.setAttribute(SPRING_SECURITY_CONTEXT, new SecurityContextImpl(
+                    UsernamePasswordAuthenticationToken.authenticated(client.user, null,
+                        AuthorityUtils.createAuthorityList("ROLE_USER"))));
+                // session fixation protection, as Spring Security does
+                request.changeSessionId();
+                client.loggedIn = true;
+            }
+            case ROTATE_ID -> {
+                if (request.getSession(false) != null) {
+                    request.changeSessionId();
+                }
+            }
+            case LOOKUP_PRINCIPAL -> {
+                if (client.loggedIn) {
+                    this.repository.findByPrincipalName(client.user);
+                }
+            }
+            case LOGOUT -> {
+                HttpSession session = request.getSession(false);
+                if (session != null) {
+                    session.invalidate();
+                }
+                client.loggedIn = false;
+            }
+            case NEW_CLIENT -> request.getSession().setAttribute("landing", "/");
+        }
+    }
+
+    /**
+     * A simulated client, only used by the thread that owns it.
+     */
+    private static final class Client {
+
+        private final String user;
+
+        private String cookie;
+
+        private boolean loggedIn;
+
+        private long awayUntil = Long.MIN_VALUE;
+
+        private Client(String user) {
+            this.user = user;
+        }
+    }
+
+    /**
+     * The kinds of requests, with their share of the traffic in percent.
+     */
+    private enum Action {
+
+        BROWSE(40),
+        ADD_TO_CART(25),
+        LOGIN(10),
+        ROTATE_ID(5),
+        LOOKUP_PRINCIPAL(5),
+        LOGOUT(5),
+        NEW_CLIENT(10);
+
+        private static final Action[] VALUES = values();
+
+        private final int percent;
+
+        Action(int percent) {
+            this.percent = percent;
+        }
+
+        static Action pick(SplittableRandom random) {
+            int value = random.nextInt(100);
+            for (Action action : VALUES) {
+                value -= action.percent;
+                if (value < 0) {
+                    return action;
+                }
+            }
+            return BROWSE;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.gotson.spring.session.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository.CaffeineSession;
+import org.jetbrains.kotlinx.lincheck.annotations.Operation;
+import org.jetbrains.kotlinx.lincheck.annotations.Param;
+import org.jetbrains.kotlinx.lincheck.paramgen.IntGen;
+import org.jetbrains.kotlinx.lincheck.strategy.stress.StressOptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.session.MapSession;
+import org.springframework.session.events.AbstractSessionEvent;
+import org.springframework.session.events.SessionCreatedEvent;
+import org.springframework.session.events.SessionDeletedEvent;
+import org.springframework.session.events.SessionExpiredEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Concurrency tests of {@link CaffeineIndexedSessionRepository}.
+ *
+ * <p>
+ * Lincheck checks that single repository operations on a small set of session ids are
+ * linearizable. Operations load a session, modify it and save it, as a request would: the
+ * attributes of a session are last-write-wins, so operations only observe the attribute
+ * they write. Sessions expire when the clock of the repository moves past their maximum
+ * inactive interval.
+ *
+ * <p>
+ * Changing the id of a session is not checked: a renamed session is stored under its new
+ * id before being removed from its original id, so that it resolves under one of them at
+ * any time, and briefly resolves under both. Renaming is covered by
+ * {@link #publishEventsExactlyOncePerSession()} instead.
+ */
+@Param(name = "key", gen = IntGen.class, conf = "1:3")
+@Param(name = "value", gen = IntGen.class, conf = "1:5")
+public class CaffeineIndexedSessionRepositoryConcurrencyTests {
+
+    private static final String VALUE_ATTRIBUTE = "value";
+
+    private final ThreadLocal<String> nextId = new ThreadLocal<>();
+
+    private final AtomicLong millis = new AtomicLong(System.currentTimeMillis());
+
+    private final CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+
+    public CaffeineIndexedSessionRepositoryConcurrencyTests() {
+        this.repository.setSessionIdGenerator(this.nextId::get);
+        this.repository.setExecutor(Runnable::run);
+        this.repository.setClock(CaffeineIndexedSessionRepositoryTests.clock(this.millis));
+        // with a custom clock and no background work, the repository of each scenario is
+        // simply garbage collected, without being destroyed
+        this.repository.init();
+    }
+
+    @Operation
+    public void create(@Param(name = "key") int key, @Param(name = "value") int value) {
+        this.nextId.set(id(key));
+        CaffeineSession session = this.repository.createSession();
+        session.setAttribute(VALUE_ATTRIBUTE, value);
+        this.repository.save(session);
+    }
+
+    @Operation
+    public Integer get(@Param(name = "key") int key) {
+        CaffeineSession session = this.repository.findById(id(key));
+        return (session != null) ? session.getAttribute(VALUE_ATTRIBUTE) : null;
+    }
+
+    @Operation
+    public boolean update(@Param(name = "key") int key, @Param(name = "value") int value) {
+        CaffeineSession session = this.repository.findById(id(key));
+        if (session == null) {
+            return false;
+        }
+        session.setAttribute(VALUE_ATTRIBUTE, value);
+        this.repository.save(session);
+        return true;
+    }
+
+    @Operation
+    public void delete(@Param(name = "key") int key) {
+        this.repository.deleteById(id(key));
+    }
+
+    @Operation
+    public void expire() {
+        this.millis.addAndGet(MapSession.DEFAULT_MAX_INACTIVE_INTERVAL.toMillis());
+    }
+
+    @Test
+    void operationsAreLinearizable() {
+        StressOptions options = new StressOptions()
+            .iterations(50)
+            .invocationsPerIteration(1_000)
+            .threads(3)
+            .actorsPerThread(3);
+        options.check(CaffeineIndexedSessionRepositoryConcurrencyTests.class);
+    }
+
+    @Test
+    void publishEventsExactlyOncePerSession() throws Exception {
+        // events by the first id of each session
+        Map<String, List<Class<?>>> events = new ConcurrentHashMap<>();
+        Map<String, String> firstIds = new ConcurrentHashMap<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher((event) -> {
+            if (event instanceof AbstractSessionEvent sessionEvent) {
+                String id = sessionEvent.getSessionId();
+                events.computeIfAbsent(firstIds.getOrDefault(id, id), (key) -> new CopyOnWriteArrayList<>())
+                    .add(event.getClass());
+            }
+        });
+        repository.setExecutor(Runnable::run);
+        AtomicLong millis = new AtomicLong(System.currentTimeMillis());
+        repository.setClock(CaffeineIndexedSessionRepositoryTests.clock(millis));
+        repository.init();
+
+        int threads = 8;
+        int sessionsPerThread = 2_000;
+        List<String> ids = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<String> created = new ArrayList<>();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < sessionsPerThread; i++) {
+                        millis.incrementAndGet();
+                        CaffeineSession session = repository.createSession();
+                        if (random.nextBoolean()) {
+                            session.setMaxInactiveInterval(Duration.ofMillis(1));
+                        }
+                        repository.save(session);
+                        created.add(session.getId());
+
+                        // as concurrent requests would, while sessions of other threads expire
+                        int index = random.nextInt(created.size());
+                        CaffeineSession loaded = repository.findById(created.get(index));
+                        if (loaded != null) {
+                            loaded.setAttribute("counter", i);
+                            if (random.nextInt(4) == 0 && loaded.getMaxInactiveInterval().toMillis() > 1) {
+                                String firstId = firstIds.getOrDefault(loaded.getId(), loaded.getId());
+                                firstIds.put(loaded.changeSessionId(), firstId);
+                                created.set(index, loaded.getId());
+                            }
+                            repository.save(loaded);
+                            if (random.nextInt(4) == 0) {
+                                repository.deleteById(loaded.getId());
+                            }
+                        }
+                    }
+                    return created;
+                }));
+            }
+            start.countDown();
+            for (Future<List<String>> future : futures) {
+                ids.addAll(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // expire the remaining short-lived sessions
+        millis.incrementAndGet();
+        for (String id : ids) {
+            repository.findById(id);
+            repository.deleteById(id);
+        }
+        ReflectionTestUtils.<Cache<?, ?>>getField(repository, "sessions").cleanUp();
+        repository.destroy();
+
+        assertThat(ids).doesNotHaveDuplicates().hasSize(threads * sessionsPerThread);
+        assertThat(events).containsOnlyKeys(ids.stream().map((id) -> firstIds.getOrDefault(id, id)).toList());
+        assertThat(firstIds).isNotEmpty();
+        assertThat(events.values()).allSatisfy((sessionEvents) -> {
+            assertThat(sessionEvents).filteredOn(SessionCreatedEvent.class::equals).hasSize(1);
+            assertThat(sessionEvents).filteredOn((type) -> SessionDeletedEvent.class.isAssignableFrom(type)
+                || SessionExpiredEvent.class.isAssignableFrom(type)).hasSize(1);
+            assertThat(sessionEvents).hasSize(2);
+        });
+    }
+
+    private static String id(int key) {
+        return "session-" + key;
+    }
+}
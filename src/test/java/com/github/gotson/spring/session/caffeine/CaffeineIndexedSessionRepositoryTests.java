@@ -2,8 +2,18 @@ package com.github.gotson.spring.session.caffeine;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository.CaffeineSession;
+import com.github.gotson.spring.session.caffeine.events.CaffeineSessionExpiredEvent;
+import com.github.gotson.spring.session.caffeine.events.SessionIdChangedEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.AuthorityUtils;
@@ -11,21 +21,44 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.session.FindByIndexNameSessionRepository;
 import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.events.AbstractSessionEvent;
+import org.springframework.session.events.SessionDeletedEvent;
+import org.springframework.session.web.http.SessionEventHttpSessionListenerAdapter;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -38,12 +71,25 @@ class CaffeineIndexedSessionRepositoryTests {
 
     private CaffeineIndexedSessionRepository repository;
 
+    // the repositories initialized by a test, destroyed after it
+    private final List<CaffeineIndexedSessionRepository> initialized = new ArrayList<>();
+
     @BeforeEach
     void setUp() {
         this.repository = new CaffeineIndexedSessionRepository();
         ReflectionTestUtils.setField(this.repository, "sessions", sessions);
     }
 
+    @AfterEach
+    void tearDown() {
+        this.initialized.forEach(CaffeineIndexedSessionRepository::destroy);
+    }
+
+    private void init(CaffeineIndexedSessionRepository repository) {
+        repository.init();
+        this.initialized.add(repository);
+    }
+
     @Test
     void setApplicationEventPublisherNull() {
         assertThatIllegalArgumentException().isThrownBy(() -> this.repository.setApplicationEventPublisher(null))
@@ -62,6 +108,44 @@ class CaffeineIndexedSessionRepositoryTests {
             .withMessage("executor cannot be null");
     }
 
+    @Test
+    void setSessionIdGeneratorNull() {
+        assertThatIllegalArgumentException().isThrownBy(() -> this.repository.setSessionIdGenerator(null))
+            .withMessage("sessionIdGenerator cannot be null");
+    }
+
+    @Test
+    void createSessionDefaultSessionIdGenerator() {
+        CaffeineSession session = this.repository.createSession();
+
+        assertThat(session.getId()).hasSize(22).matches("[A-Za-z0-9_-]+");
+        assertThat(this.repository.createSession().getId()).isNotEqualTo(session.getId());
+
+        verifyNoMoreInteractions(this.sessions);
+    }
+
+    @Test
+    void createSessionCustomSessionIdGenerator() {
+        this.repository.setSessionIdGenerator(() -> "custom-id");
+
+        CaffeineSession session = this.repository.createSession();
+
+        assertThat(session.getId()).isEqualTo("custom-id");
+
+        verifyNoMoreInteractions(this.sessions);
+    }
+
+    @Test
+    void changeSessionIdCustomSessionIdGenerator() {
+        AtomicInteger counter = new AtomicInteger();
+        this.repository.setSessionIdGenerator(() -> "id-" + counter.incrementAndGet());
+
+        CaffeineSession session = this.repository.createSession();
+        String changedId = session.changeSessionId();
+
+        assertThat(session.getId()).isEqualTo("id-2").isEqualTo(changedId);
+    }
+
     @Test
     void createSessionDefaultMaxInactiveInterval() {
         CaffeineSession session = this.repository.createSession();
@@ -93,6 +177,44 @@ class CaffeineIndexedSessionRepositoryTests {
         verifyNoMoreInteractions(this.sessions);
     }
 
+    @Test
+    void saveNewEmptyWithLazySessionCreation() {
+        this.repository.setLazySessionCreation(true);
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+        this.repository.setApplicationEventPublisher(eventPublisher);
+
+        CaffeineSession session = this.repository.createSession();
+        this.repository.save(session);
+
+        verifyNoMoreInteractions(this.sessions);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void saveNewWithAttributeWithLazySessionCreation() {
+        this.repository.setLazySessionCreation(true);
+
+        CaffeineSession session = this.repository.createSession();
+        this.repository.save(session);
+        session.setAttribute("testName", "testValue");
+        this.repository.save(session);
+
+        verify(this.sessions, times(1)).put(eq(session.getId()), eq(session.getDelegate()));
+        verifyNoMoreInteractions(this.sessions);
+    }
+
+    @Test
+    void saveNewMarkedPersistentWithLazySessionCreation() {
+        this.repository.setLazySessionCreation(true);
+
+        CaffeineSession session = this.repository.createSession();
+        session.markPersistent();
+        this.repository.save(session);
+
+        verify(this.sessions, times(1)).put(eq(session.getId()), eq(session.getDelegate()));
+        verifyNoMoreInteractions(this.sessions);
+    }
+
     @Test
     void saveUpdatedAttribute() {
         CaffeineSession session = this.repository.createSession();
@@ -162,6 +284,249 @@ class CaffeineIndexedSessionRepositoryTests {
         verifyNoMoreInteractions(this.sessions);
     }
 
+    @Test
+    void getSessionMaxLifetimeReached() {
+        this.repository.setMaxSessionLifetime(60);
+        MapSession saved = new MapSession();
+        saved.setCreationTime(Instant.now().minusSeconds(61));
+        given(this.sessions.getIfPresent(eq(saved.getId()))).willReturn(saved);
+
+        CaffeineSession session = this.repository.findById(saved.getId());
+
+        assertThat(session).isNull();
+        verify(this.sessions, times(1)).getIfPresent(eq(saved.getId()));
+        verify(this.sessions, times(1)).invalidate(eq(saved.getId()));
+        verifyNoMoreInteractions(this.sessions);
+    }
+
+    @Test
+    void expireActiveSessionAfterMaxLifetime() throws InterruptedException {
+        List<Object> events = new CopyOnWriteArrayList<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setExecutor(Runnable::run);
+        repository.setMaxSessionLifetime(1);
+        init(repository);
+
+        CaffeineSession session = repository.createSession();
+        repository.save(session);
+        Thread.sleep(500);
+        session = repository.findById(session.getId());
+        session.setLastAccessedTime(Instant.now());
+        repository.save(session);
+        Thread.sleep(700);
+
+        assertThat(repository.findById(session.getId())).isNull();
+        assertThat(events).last().isInstanceOfSatisfying(CaffeineSessionExpiredEvent.class,
+            (event) -> assertThat(event.getReason()).isEqualTo(CaffeineSessionExpiredEvent.Reason.MAX_LIFETIME));
+    }
+
+    @Test
+    void expireSessionsWithCustomClock() {
+        AtomicLong millis = new AtomicLong(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+        Clock clock = clock(millis);
+        List<Object> events = new CopyOnWriteArrayList<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setExecutor(Runnable::run);
+        repository.setClock(clock);
+        init(repository);
+
+        CaffeineSession session = repository.createSession();
+        repository.save(session);
+        assertThat(session.getCreationTime()).isEqualTo(clock.instant());
+
+        millis.addAndGet(Duration.ofSeconds(MapSession.DEFAULT_MAX_INACTIVE_INTERVAL_SECONDS - 1).toMillis());
+        assertThat(repository.findById(session.getId())).isNotNull();
+
+        millis.addAndGet(Duration.ofSeconds(1).toMillis());
+        assertThat(repository.findById(session.getId())).isNull();
+        assertThat(events).last().isInstanceOf(CaffeineSessionExpiredEvent.class);
+    }
+
+    @Test
+    void recordFlightRecorderEvents(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("recording.jfr");
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setExecutor(Runnable::run);
+        try (Recording recording = new Recording()) {
+            recording.enable(FlightRecorderEvents.LIFECYCLE);
+            recording.enable(FlightRecorderEvents.SAVE).withThreshold(Duration.ZERO);
+            recording.enable(FlightRecorderEvents.INDEX_LOOKUP).withThreshold(Duration.ZERO);
+            recording.start();
+            repository.init();
+
+            CaffeineSession session = repository.createSession();
+            session.setAttribute("name", "value");
+            repository.save(session);
+            session.setAttribute("name", "other");
+            repository.save(session);
+            repository.findByPrincipalName("username");
+            repository.deleteById(session.getId());
+
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            repository.destroy();
+        }
+
+        List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+        assertThat(recorded).filteredOn((event) -> event.getEventType().getName().equals(FlightRecorderEvents.SAVE))
+            .extracting((event) -> event.getString("operation"), (event) -> event.getInt("copiedAttributes"))
+            .containsExactly(tuple("create", 0), tuple("update", 1));
+        assertThat(recorded).filteredOn((event) -> event.getEventType().getName().equals(FlightRecorderEvents.LIFECYCLE))
+            .extracting((event) -> event.getString("action"))
+            .containsExactly("created", "deleted");
+        assertThat(recorded).filteredOn((event) -> event.getEventType().getName().equals(FlightRecorderEvents.INDEX_LOOKUP))
+            .extracting((event) -> event.getString("indexName"), (event) -> event.getInt("resultSize"))
+            .containsExactly(tuple(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME, 0));
+    }
+
+    @Test
+    void recordRemovalBacklogWithoutRetainingRepositories() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setExecutor(Runnable::run);
+        // not destroyed, as it must be collected: it holds no thread with the default clock
+        repository.init();
+        WeakReference<CaffeineIndexedSessionRepository> reference = new WeakReference<>(repository);
+        repository = null;
+
+        for (int i = 0; i < 10 && reference.get() != null; i++) {
+            System.gc();
+        }
+
+        assertThat(reference.get()).isNull();
+    }
+
+    @Test
+    void publishOnlySessionEventsWithListeners() {
+        List<SessionDeletedEvent> deleted = new CopyOnWriteArrayList<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        try (GenericApplicationContext context = new GenericApplicationContext()) {
+            repository.setApplicationEventPublisher(context);
+            repository.setExecutor(Runnable::run);
+            init(repository);
+            context.registerBean(CaffeineIndexedSessionRepository.class, () -> repository);
+            // forwards events to no HttpSessionListener
+            context.registerBean(SessionEventHttpSessionListenerAdapter.class,
+                () -> new SessionEventHttpSessionListenerAdapter(List.of()));
+            context.addApplicationListener(new ApplicationListener<SessionDeletedEvent>() {
+                @Override
+                public void onApplicationEvent(SessionDeletedEvent event) {
+                    deleted.add(event);
+                }
+            });
+            context.refresh();
+
+            SessionEventListeners listeners = ReflectionTestUtils.getField(repository, "eventListeners");
+            assertThat(listeners.created()).isFalse();
+            assertThat(listeners.deleted()).isTrue();
+            assertThat(listeners.expired()).isFalse();
+            assertThat(listeners.idChanged()).isFalse();
+
+            CaffeineSession session = repository.createSession();
+            repository.save(session);
+            repository.deleteById(session.getId());
+
+            assertThat(deleted).extracting(SessionDeletedEvent::getSessionId).containsExactly(session.getId());
+        }
+    }
+
+    @Test
+    void shortenIdleTimeoutOfAnonymousSessionsUnderMemoryPressure() {
+        List<Object> events = new CopyOnWriteArrayList<>();
+        MemoryPressureController controller = new MemoryPressureController(0);
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setExecutor(Runnable::run);
+        repository.setMemoryPressureController(controller);
+        init(repository);
+
+        CaffeineSession anonymous = repository.createSession();
+        repository.save(anonymous);
+        CaffeineSession authenticated = repository.createSession();
+        authenticated.setAttribute(SPRING_SECURITY_CONTEXT, new SecurityContextImpl(
+            new UsernamePasswordAuthenticationToken("username", "notused", AuthorityUtils.createAuthorityList("ROLE_USER"))));
+        repository.save(authenticated);
+
+        controller.signal(true);
+
+        assertThat(repository.findById(anonymous.getId())).isNull();
+        assertThat(repository.findById(authenticated.getId())).isNotNull();
+        assertThat(events).filteredOn(CaffeineSessionExpiredEvent.class::isInstance)
+            .extracting((event) -> ((CaffeineSessionExpiredEvent) event).getSessionId())
+            .containsExactly(anonymous.getId());
+
+        CaffeineSession underPressure = repository.createSession();
+        repository.save(underPressure);
+        assertThat(repository.findById(underPressure.getId())).isNull();
+
+        controller.signal(false);
+
+        CaffeineSession afterPressure = repository.createSession();
+        repository.save(afterPressure);
+        assertThat(repository.findById(afterPressure.getId())).isNotNull();
+    }
+
+    @Test
+    void restoreIdleTimeoutWhenMemoryPressureClears() {
+        AtomicLong millis = new AtomicLong(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+        MemoryPressureController controller = new MemoryPressureController(0.5);
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setExecutor(Runnable::run);
+        repository.setClock(clock(millis));
+        repository.setDefaultMaxInactiveInterval((int) Duration.ofMinutes(30).toSeconds());
+        repository.setMemoryPressureController(controller);
+        repository.init();
+        CaffeineSession anonymous = repository.createSession();
+        repository.save(anonymous);
+
+        controller.signal(true);
+        millis.addAndGet(Duration.ofMinutes(10).toMillis());
+        controller.signal(false);
+        millis.addAndGet(Duration.ofMinutes(10).toMillis());
+        repository.cleanUp();
+
+        assertThat(repository.getSessionCount()).isEqualTo(1);
+
+        repository.destroy();
+        assertThat(ReflectionTestUtils.<List<?>>getField(controller, "listeners")).isEmpty();
+    }
+
+    @Test
+    void publishLightweightExpiredEvents() {
+        List<Object> events = new CopyOnWriteArrayList<>();
+        MemoryPressureController controller = new MemoryPressureController(0);
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setExecutor(Runnable::run);
+        repository.setMemoryPressureController(controller);
+        repository.setLightweightExpiredEvents(true);
+        repository.setExpiredEventAttributeNames(List.of("tenant"));
+        init(repository);
+
+        CaffeineSession expiring = repository.createSession();
+        expiring.setAttribute("tenant", "acme");
+        expiring.setAttribute("cart", new byte[1024]);
+        repository.save(expiring);
+        CaffeineSession deleted = repository.createSession();
+        repository.save(deleted);
+        repository.deleteById(deleted.getId());
+
+        controller.signal(true);
+
+        assertThat(events).filteredOn(CaffeineSessionExpiredEvent.class::isInstance).singleElement()
+            .satisfies((event) -> {
+                Session session = ((CaffeineSessionExpiredEvent) event).getSession();
+                assertThat(session.getId()).isEqualTo(expiring.getId());
+                assertThat(session.getLastAccessedTime()).isEqualTo(expiring.getLastAccessedTime());
+                assertThat(session.getAttributeNames()).containsExactly("tenant");
+            });
+        assertThat(events).filteredOn(SessionDeletedEvent.class::isInstance)
+            .extracting((event) -> ((SessionDeletedEvent) event).getSessionId())
+            .containsExactly(deleted.getId());
+    }
+
     @Test
     void getSessionFound() {
         MapSession saved = new MapSession();
@@ -256,6 +621,595 @@ class CaffeineIndexedSessionRepositoryTests {
         verifyNoMoreInteractions(this.sessions);
     }
 
+    @Test
+    void deleteLeastRecentlyAccessedSessionBeyondMaximumSessionsPerPrincipal() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setExecutor(Runnable::run);
+        repository.setMaximumSessionsPerPrincipal(2);
+        init(repository);
+        SecurityContext securityContext = new SecurityContextImpl(new UsernamePasswordAuthenticationToken("user1",
+            "notused", AuthorityUtils.createAuthorityList("ROLE_USER")));
+        Instant now = Instant.now();
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CaffeineSession session = repository.createSession();
+            session.setLastAccessedTime(now.minusSeconds(i == 1 ? 20 : 10 - i));
+            session.setAttribute(SPRING_SECURITY_CONTEXT, securityContext);
+            repository.save(session);
+            ids.add(session.getId());
+        }
+        CaffeineSession other = repository.createSession();
+        other.setAttribute(SPRING_SECURITY_CONTEXT, new SecurityContextImpl(new UsernamePasswordAuthenticationToken(
+            "user2", "notused", AuthorityUtils.createAuthorityList("ROLE_USER"))));
+        repository.save(other);
+
+        assertThat(repository.findByIndexNameAndIndexValue(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME,
+            "user1")).containsOnlyKeys(ids.get(0), ids.get(2));
+        assertThat(repository.findById(ids.get(1))).isNull();
+        assertThat(repository.findById(other.getId())).isNotNull();
+
+        repository.deleteById(ids.get(0));
+        assertThat(repository.findByIndexNameAndIndexValue(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME,
+            "user1")).containsOnlyKeys(ids.get(2));
+    }
+
+    @Test
+    void doNotStoreNewSessionsRejectedByAdmissionControl() {
+        List<Object> events = new CopyOnWriteArrayList<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setAdmissionController(new SessionAdmissionController(0.001, 3)
+            .withClientLimit((session) -> session.getAttribute("client"), 0.001, 1));
+        init(repository);
+
+        List<CaffeineSession> sessions = new ArrayList<>();
+        for (String client : List.of("a", "a", "b", "c", "d")) {
+            CaffeineSession session = repository.createSession();
+            session.setAttribute("client", client);
+            repository.save(session);
+            sessions.add(session);
+        }
+
+        assertThat(sessions).extracting((session) -> repository.findById(session.getId()) != null)
+            .containsExactly(true, false, true, true, false);
+        assertThat(events).hasSize(3);
+        assertThat(repository.getRejectedSessionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void limitNewSessionsPerClientFromAttributesSetBeforeTheFirstSave() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setAdmissionController(new SessionAdmissionController(1_000, 1_000)
+            .withClientLimit((session) -> session.getAttribute("remoteAddress"), 0.001, 2));
+        init(repository);
+
+        List<Boolean> stored = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            // as a filter would, during the request that creates the session
+            CaffeineSession session = repository.createSession();
+            session.setAttribute("remoteAddress", "192.0.2.1");
+            repository.save(session);
+            stored.add(repository.findById(session.getId()) != null);
+        }
+        // no client key, only subject to the global limit
+        CaffeineSession anonymous = repository.createSession();
+        repository.save(anonymous);
+
+        assertThat(stored).containsExactly(true, true, false);
+        assertThat(repository.findById(anonymous.getId())).isNotNull();
+        assertThat(repository.getRejectedSessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findSessionsByActivityWithPagination() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        init(repository);
+        Instant now = Instant.now();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CaffeineSession session = repository.createSession();
+            session.setLastAccessedTime(now.minus(Duration.ofMinutes(i)));
+            repository.save(session);
+            ids.add(session.getId());
+        }
+
+        SessionPage first = repository.findSessions(SessionQuery.mostRecentlyActive(2));
+        SessionPage second = repository.findSessions(SessionQuery.mostRecentlyActive(2).after(first.nextCursor()));
+        SessionPage third = repository.findSessions(SessionQuery.mostRecentlyActive(2).after(second.nextCursor()));
+
+        assertThat(first.sessions()).extracting(SessionSummary::id).containsExactly(ids.get(0), ids.get(1));
+        assertThat(second.sessions()).extracting(SessionSummary::id).containsExactly(ids.get(2), ids.get(3));
+        assertThat(third.sessions()).extracting(SessionSummary::id).containsExactly(ids.get(4));
+        assertThat(third.hasNext()).isFalse();
+
+        SessionPage idle = repository.findSessions(SessionQuery.leastRecentlyActive(10).idleFor(Duration.ofSeconds(150)));
+
+        assertThat(idle.sessions()).extracting(SessionSummary::id).containsExactly(ids.get(4), ids.get(3));
+        assertThat(idle.hasNext()).isFalse();
+    }
+
+    @Test
+    void findSessionsByExpirationWithPagination() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        init(repository);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CaffeineSession session = repository.createSession();
+            session.setMaxInactiveInterval(Duration.ofMinutes(10 + i));
+            session.setAttribute("attribute", "value");
+            repository.save(session);
+            ids.add(session.getId());
+        }
+
+        SessionPage first = repository.findSessions(SessionQuery.expiringSoonest(2));
+        SessionPage second = repository.findSessions(SessionQuery.expiringSoonest(2).after(first.nextCursor()));
+
+        assertThat(first.sessions()).extracting(SessionSummary::id).containsExactly(ids.get(0), ids.get(1));
+        assertThat(first.sessions()).allSatisfy((summary) -> assertThat(summary.attributeCount()).isEqualTo(1));
+        assertThat(second.sessions()).extracting(SessionSummary::id).containsExactly(ids.get(2));
+        assertThat(repository.findSessions(SessionQuery.expiringLatest(1)).sessions())
+            .extracting(SessionSummary::id).containsExactly(ids.get(2));
+        assertThat(repository.streamSessions()).extracting(SessionSummary::id).containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    @Test
+    void findSessionsByExpirationWithinTheSameTimerBucket() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        init(repository);
+        Instant now = Instant.now();
+        // expirations a few seconds apart share a bucket of the timer wheel, inserted out of order
+        Map<Integer, String> ids = new TreeMap<>(Comparator.reverseOrder());
+        for (int idleSeconds : new int[] {3, 0, 5, 1, 4, 2}) {
+            CaffeineSession session = repository.createSession();
+            session.setMaxInactiveInterval(Duration.ofMinutes(30));
+            session.setLastAccessedTime(now.minusSeconds(idleSeconds));
+            repository.save(session);
+            ids.put(idleSeconds, session.getId());
+        }
+
+        List<String> soonest = new ArrayList<>();
+        SessionPage page = repository.findSessions(SessionQuery.expiringSoonest(2));
+        soonest.addAll(page.sessions().stream().map(SessionSummary::id).toList());
+        while (page.hasNext()) {
+            page = repository.findSessions(SessionQuery.expiringSoonest(2).after(page.nextCursor()));
+            soonest.addAll(page.sessions().stream().map(SessionSummary::id).toList());
+        }
+        List<String> latest = new ArrayList<>();
+        page = repository.findSessions(SessionQuery.expiringLatest(4));
+        latest.addAll(page.sessions().stream().map(SessionSummary::id).toList());
+        page = repository.findSessions(SessionQuery.expiringLatest(4).after(page.nextCursor()));
+        latest.addAll(page.sessions().stream().map(SessionSummary::id).toList());
+
+        List<String> expected = new ArrayList<>(ids.values());
+        assertThat(soonest).containsExactlyElementsOf(expected);
+        Collections.reverse(expected);
+        assertThat(latest).containsExactlyElementsOf(expected);
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    @Test
+    void findSessionsInvalidCursor() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        init(repository);
+
+        assertThatIllegalArgumentException()
+            .isThrownBy(() -> repository.findSessions(SessionQuery.mostRecentlyActive(1).after("invalid")));
+    }
+
+    @Test
+    void persistPeakSessionCountAsSizingHint(@TempDir Path directory) throws IOException {
+        Path hint = directory.resolve("session-count");
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setSizingHintFile(hint);
+        repository.init();
+        for (int i = 0; i < 3; i++) {
+            repository.save(repository.createSession());
+        }
+        repository.deleteById(repository.findSessions(SessionQuery.mostRecentlyActive(1)).sessions().get(0).id());
+        repository.destroy();
+
+        assertThat(Files.readString(hint)).isEqualTo("3");
+
+        CaffeineIndexedSessionRepository restarted = new CaffeineIndexedSessionRepository();
+        restarted.setSizingHintFile(hint);
+        restarted.setMaximumSize(2L);
+        assertThat(ReflectionTestUtils.<Integer>invokeMethod(restarted, "hintedInitialCapacity")).isEqualTo(2);
+
+        restarted.init();
+        restarted.destroy();
+
+        assertThat(Files.readString(hint)).isEqualTo("3");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).containsExactly(hint);
+        }
+    }
+
+    @Test
+    void warmUpDoesNotLeaveSessionsNorPublishEvents() {
+        List<Object> events = new CopyOnWriteArrayList<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setExecutor(Runnable::run);
+        repository.setWarmUp(true);
+        init(repository);
+
+        assertThat(repository.getSessionCount()).isZero();
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void changeLimitsAtRuntime() {
+        List<Object> events = new CopyOnWriteArrayList<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setExecutor(Runnable::run);
+        repository.setMaximumSize(10L);
+        init(repository);
+        for (int i = 0; i < 5; i++) {
+            repository.save(repository.createSession());
+        }
+        CaffeineSessionRepositoryManagement management = new CaffeineSessionRepositoryManagement(repository);
+
+        management.setMaximumSize(2L);
+        management.setDefaultMaxInactiveInterval(60);
+
+        assertThat(management.getMaximumSize()).isEqualTo(2L);
+        assertThat(management.getSessionCount()).isEqualTo(2);
+        assertThat(events).filteredOn(CaffeineSessionExpiredEvent.class::isInstance).hasSize(3);
+        assertThat(repository.createSession().getMaxInactiveInterval()).isEqualTo(Duration.ofMinutes(1));
+        assertThatIllegalStateException().isThrownBy(() -> management.setMaximumWeight(1024L));
+    }
+
+    @Test
+    void expireInactiveSessionsOnDemand() {
+        AtomicLong millis = new AtomicLong(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+        List<Object> events = new CopyOnWriteArrayList<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setExecutor(Runnable::run);
+        repository.setClock(clock(millis));
+        init(repository);
+        CaffeineSession inactive = repository.createSession();
+        repository.save(inactive);
+        millis.addAndGet(Duration.ofMinutes(10).toMillis());
+        CaffeineSession active = repository.createSession();
+        repository.save(active);
+
+        int expired = new CaffeineSessionRepositoryManagement(repository).expireInactiveSessions(Duration.ofMinutes(5).toSeconds());
+
+        assertThat(expired).isEqualTo(1);
+        assertThat(repository.findById(inactive.getId())).isNull();
+        assertThat(repository.findById(active.getId())).isNotNull();
+        assertThat(events).filteredOn(CaffeineSessionExpiredEvent.class::isInstance)
+            .extracting((event) -> ((CaffeineSessionExpiredEvent) event).getReason())
+            .containsExactly(CaffeineSessionExpiredEvent.Reason.INACTIVITY);
+    }
+
+    @Test
+    void compressColdSessions() {
+        AtomicLong millis = new AtomicLong(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setExecutor(Runnable::run);
+        repository.setClock(clock(millis));
+        repository.setColdSessionThreshold(Duration.ofMinutes(5));
+        init(repository);
+        CaffeineSession cold = repository.createSession();
+        cold.setAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE, "user");
+        cold.setAttribute("cart", new ArrayList<>(List.of("item")));
+        repository.save(cold);
+        millis.addAndGet(Duration.ofMinutes(10).toMillis());
+        CaffeineSession hot = repository.createSession();
+        hot.setAttribute("cart", new ArrayList<>(List.of("item")));
+        repository.save(hot);
+
+        assertThat(repository.compressColdSessions(false)).isEqualTo(1);
+
+        Cache<String, Session> sessions = ReflectionTestUtils.getField(repository, "sessions");
+        assertThat(sessions.getIfPresent(cold.getId())).isInstanceOf(ColdSession.class);
+        assertThat(sessions.getIfPresent(hot.getId())).isInstanceOf(MapSession.class);
+        assertThat(repository.findByPrincipalName("user")).containsOnlyKeys(cold.getId());
+        CaffeineSession loaded = repository.findById(cold.getId());
+        assertThat(loaded.<List<String>>getAttribute("cart")).containsExactly("item");
+        assertThat(loaded.getLastAccessedTime()).isEqualTo(cold.getLastAccessedTime());
+
+        // compressing does not extend the life of the session
+        millis.addAndGet(Duration.ofMinutes(21).toMillis());
+        repository.cleanUp();
+        assertThat(sessions.getIfPresent(cold.getId())).isNull();
+        assertThat(repository.getSessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void storeColdSessionsUncompressedWhenSaved() {
+        AtomicLong millis = new AtomicLong(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setExecutor(Runnable::run);
+        repository.setClock(clock(millis));
+        repository.setColdSessionThreshold(Duration.ofMinutes(5));
+        repository.setAttributeChangeDetection(AttributeChangeDetection.IDENTITY);
+        init(repository);
+        CaffeineSession session = repository.createSession();
+        session.setAttribute("name", "value");
+        repository.save(session);
+        CaffeineSession unserializable = repository.createSession();
+        unserializable.setAttribute("lock", new Object());
+        repository.save(unserializable);
+        millis.addAndGet(Duration.ofMinutes(10).toMillis());
+
+        assertThat(repository.compressColdSessions(false)).isEqualTo(1);
+
+        CaffeineSession loaded = repository.findById(session.getId());
+        loaded.setLastAccessedTime(Instant.ofEpochMilli(millis.get()));
+        repository.save(loaded);
+        Cache<String, Session> sessions = ReflectionTestUtils.getField(repository, "sessions");
+        assertThat(sessions.getIfPresent(session.getId())).isInstanceOf(MapSession.class);
+        assertThat(sessions.getIfPresent(unserializable.getId())).isInstanceOf(MapSession.class);
+        assertThat(repository.findById(session.getId()).<String>getAttribute("name")).isEqualTo("value");
+    }
+
+    @Test
+    void publishColdSessionsInflated() {
+        AtomicLong millis = new AtomicLong(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli());
+        List<Object> events = new CopyOnWriteArrayList<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setExecutor(Runnable::run);
+        repository.setClock(clock(millis));
+        repository.setColdSessionThreshold(Duration.ofMinutes(5));
+        init(repository);
+        CaffeineSession deleted = repository.createSession();
+        deleted.setAttribute("cart", new ArrayList<>(List.of("item")));
+        repository.save(deleted);
+        CaffeineSession expired = repository.createSession();
+        expired.setAttribute("cart", new ArrayList<>(List.of("item")));
+        repository.save(expired);
+        millis.addAndGet(Duration.ofMinutes(10).toMillis());
+        assertThat(repository.compressColdSessions(false)).isEqualTo(2);
+
+        Cache<String, Session> sessions = ReflectionTestUtils.getField(repository, "sessions");
+        Session cold = sessions.getIfPresent(expired.getId());
+        assertThat(cold).isInstanceOf(ColdSession.class);
+        // inflated once for the following reads
+        assertThat(cold.<List<String>>getAttribute("cart")).isSameAs(cold.getAttribute("cart"));
+
+        repository.deleteById(deleted.getId());
+        millis.addAndGet(Duration.ofMinutes(30).toMillis());
+        repository.cleanUp();
+
+        List<Object> removals = events.stream()
+            .filter((event) -> event instanceof SessionDeletedEvent || event instanceof CaffeineSessionExpiredEvent)
+            .toList();
+        assertThat(removals).hasSize(2).allSatisfy((event) -> {
+            Session session = ((AbstractSessionEvent) event).getSession();
+            assertThat(session).isInstanceOf(MapSession.class);
+            assertThat(session.<List<String>>getAttribute("cart")).containsExactly("item");
+            // listeners can change the published session
+            session.setAttribute("cart", null);
+        });
+        assertThat(removals.get(0)).isInstanceOf(SessionDeletedEvent.class);
+        assertThat(removals.get(1)).isInstanceOf(CaffeineSessionExpiredEvent.class);
+    }
+
+    @Test
+    void skipUnchangedAttributeWritesWithIdentityChangeDetection() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setAttributeChangeDetection(AttributeChangeDetection.IDENTITY);
+        init(repository);
+        List<String> cart = new ArrayList<>();
+        CaffeineSession session = repository.createSession();
+        session.setAttribute("cart", cart);
+        repository.save(session);
+
+        CaffeineSession loaded = repository.findById(session.getId());
+        loaded.setAttribute("cart", cart);
+        loaded.removeAttribute("absent");
+        assertThat(loaded.hasOnlyLastAccessedTimeChanged()).isTrue();
+
+        loaded.setAttribute("cart", new ArrayList<>(cart));
+        assertThat(loaded.hasOnlyLastAccessedTimeChanged()).isFalse();
+    }
+
+    @Test
+    void skipUnchangedAttributeWritesWithEqualityChangeDetection() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setAttributeChangeDetection(AttributeChangeDetection.EQUALITY);
+        init(repository);
+        CaffeineSession session = repository.createSession();
+        session.setAttribute("locale", "en");
+        repository.save(session);
+
+        CaffeineSession loaded = repository.findById(session.getId());
+        loaded.setAttribute("locale", new String("en"));
+        assertThat(loaded.hasOnlyLastAccessedTimeChanged()).isTrue();
+
+        loaded.setAttribute("locale", "fr");
+        assertThat(loaded.hasOnlyLastAccessedTimeChanged()).isFalse();
+    }
+
+    @Test
+    void renameSessionWithoutDeletingIt() {
+        List<Object> events = new CopyOnWriteArrayList<>();
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setApplicationEventPublisher(events::add);
+        repository.setExecutor(Runnable::run);
+        init(repository);
+        CaffeineSession session = repository.createSession();
+        session.setAttribute("name", "value");
+        repository.save(session);
+        String originalId = session.getId();
+
+        CaffeineSession loaded = repository.findById(originalId);
+        String changedId = loaded.changeSessionId();
+        repository.save(loaded);
+
+        assertThat(repository.findById(originalId)).isNull();
+        assertThat(repository.findById(changedId).<String>getAttribute("name")).isEqualTo("value");
+        assertThat(events).noneMatch(SessionDeletedEvent.class::isInstance);
+        assertThat(events).last().isInstanceOfSatisfying(SessionIdChangedEvent.class, (event) -> {
+            assertThat(event.getOldSessionId()).isEqualTo(originalId);
+            assertThat(event.getNewSessionId()).isEqualTo(changedId);
+        });
+
+        // the stored session of a renamed session is not modified until saved
+        loaded.setAttribute("name", "changed");
+        loaded.setMaxInactiveInterval(Duration.ofMinutes(5));
+        assertThat(repository.findById(changedId).<String>getAttribute("name")).isEqualTo("value");
+        assertThat(repository.findById(changedId).getMaxInactiveInterval()).isNotEqualTo(Duration.ofMinutes(5));
+
+        // the stored session of a new session is not modified nor renamed in place
+        CaffeineSession created = repository.createSession();
+        repository.save(created);
+        String createdId = created.getId();
+        created.setAttribute("name", "value");
+        assertThat(repository.findById(createdId).getAttributeNames()).isEmpty();
+        created.changeSessionId();
+        assertThat(repository.findById(createdId)).isNotNull();
+    }
+
+    @Test
+    void storeSessionsInCompactForm() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setCompactStorage(true);
+        init(repository);
+        CaffeineSession session = repository.createSession();
+        session.setAttribute("name", "value");
+        repository.save(session);
+
+        CaffeineSession loaded = repository.findById(session.getId());
+        loaded.setAttribute("other", "value");
+        repository.save(loaded);
+        loaded = repository.findById(session.getId());
+
+        Cache<String, Session> sessions = ReflectionTestUtils.getField(repository, "sessions");
+        assertThat(sessions.getIfPresent(session.getId())).isInstanceOf(CompactSession.class);
+        assertThat(loaded.getAttributeNames()).containsExactlyInAnyOrder("name", "other");
+        assertThat(loaded.getCreationTime()).isEqualTo(session.getCreationTime());
+    }
+
+    @Test
+    void deduplicateAttributeNamesAndPrincipalNames() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setStringDeduplication(true);
+        init(repository);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            CaffeineSession session = repository.createSession();
+            session.setAttribute(new String("name"), "value");
+            session.setAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE, new String("user"));
+            repository.save(session);
+            ids.add(session.getId());
+        }
+
+        Cache<String, Session> sessions = ReflectionTestUtils.getField(repository, "sessions");
+        Session first = sessions.getIfPresent(ids.get(0));
+        Session second = sessions.getIfPresent(ids.get(1));
+        assertThat(second.getAttributeNames()).filteredOn("name"::equals).singleElement()
+            .isSameAs(first.getAttributeNames().stream().filter("name"::equals).findFirst().orElseThrow());
+        assertThat(second.<String>getAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE))
+            .isSameAs(first.getAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE));
+        assertThat(repository.findByIndexNameAndIndexValue(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME,
+            "user")).containsOnlyKeys(ids);
+    }
+
+    @Test
+    void touchStoredSessionInPlaceWhenOnlyLastAccessedTimeChanged() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setAttributeChangeDetection(AttributeChangeDetection.IDENTITY);
+        repository.setCompactStorage(true);
+        init(repository);
+        CaffeineSession session = repository.createSession();
+        repository.save(session);
+        Cache<String, Session> sessions = ReflectionTestUtils.getField(repository, "sessions");
+        Session stored = sessions.getIfPresent(session.getId());
+
+        CaffeineSession loaded = repository.findById(session.getId());
+        Instant lastAccessedTime = loaded.getLastAccessedTime().plusSeconds(10);
+        loaded.setLastAccessedTime(lastAccessedTime);
+        repository.save(loaded);
+
+        assertThat(sessions.getIfPresent(session.getId())).isSameAs(stored);
+        assertThat(stored.getLastAccessedTime()).isEqualTo(lastAccessedTime);
+    }
+
+    @Test
+    void copyStoredMapSessionWhenOnlyLastAccessedTimeChanged() {
+        CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+        repository.setAttributeChangeDetection(AttributeChangeDetection.IDENTITY);
+        init(repository);
+        CaffeineSession session = repository.createSession();
+        repository.save(session);
+        Cache<String, Session> sessions = ReflectionTestUtils.getField(repository, "sessions");
+        Session stored = sessions.getIfPresent(session.getId());
+        Instant storedLastAccessedTime = stored.getLastAccessedTime();
+
+        CaffeineSession loaded = repository.findById(session.getId());
+        Instant lastAccessedTime = loaded.getLastAccessedTime().plusSeconds(10);
+        loaded.setLastAccessedTime(lastAccessedTime);
+        repository.save(loaded);
+
+        // concurrent loads may be copying the stored session
+        assertThat(stored.getLastAccessedTime()).isEqualTo(storedLastAccessedTime);
+        assertThat(sessions.getIfPresent(session.getId()).getLastAccessedTime()).isEqualTo(lastAccessedTime);
+    }
+
+    @Test
+    void resolvePrincipalOnlyWhenAuthenticationChanges() {
+        AtomicInteger resolutions = new AtomicInteger();
+        SecurityContext securityContext = new SecurityContextImpl(countingAuthentication("user1", resolutions));
+
+        CaffeineSession session = this.repository.createSession();
+        session.setAttribute(SPRING_SECURITY_CONTEXT, securityContext);
+        session.setAttribute(SPRING_SECURITY_CONTEXT, securityContext);
+        CaffeineSession other = this.repository.createSession();
+        other.setAttribute(SPRING_SECURITY_CONTEXT, securityContext);
+
+        assertThat(resolutions).hasValue(1);
+        assertThat(other.<String>getAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE)).isEqualTo("user1");
+
+        securityContext.setAuthentication(countingAuthentication("user2", resolutions));
+        session.setAttribute(SPRING_SECURITY_CONTEXT, securityContext);
+
+        assertThat(resolutions).hasValue(2);
+        assertThat(session.<String>getAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE)).isEqualTo("user2");
+    }
+
+    @Test
+    void resolvePrincipalOnEachWriteWithCustomIndexResolver() {
+        AtomicInteger resolutions = new AtomicInteger();
+        Map<String, String> tenants = new ConcurrentHashMap<>();
+        this.repository.setIndexResolver((session) -> {
+            resolutions.incrementAndGet();
+            SecurityContext context = session.getAttribute(SPRING_SECURITY_CONTEXT);
+            return Map.of(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME,
+                tenants.getOrDefault(session.getId(), "") + context.getAuthentication().getName());
+        });
+        SecurityContext securityContext = new SecurityContextImpl(new UsernamePasswordAuthenticationToken("user1",
+            "notused", AuthorityUtils.createAuthorityList("ROLE_USER")));
+
+        CaffeineSession session = this.repository.createSession();
+        session.setAttribute(SPRING_SECURITY_CONTEXT, securityContext);
+        CaffeineSession other = this.repository.createSession();
+        tenants.put(other.getId(), "tenant/");
+        other.setAttribute(SPRING_SECURITY_CONTEXT, securityContext);
+
+        // the result may depend on more than the authentication of the security context
+        assertThat(resolutions).hasValue(2);
+        assertThat(session.<String>getAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE)).isEqualTo("user1");
+        assertThat(other.<String>getAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE))
+            .isEqualTo("tenant/user1");
+    }
+
+    private static Authentication countingAuthentication(String name, AtomicInteger resolutions) {
+        return new UsernamePasswordAuthenticationToken(name, "notused", AuthorityUtils.createAuthorityList("ROLE_USER")) {
+            @Override
+            public String getName() {
+                resolutions.incrementAndGet();
+                return super.getName();
+            }
+        };
+    }
+
     @Test
     void getAttributeNamesAndRemove() {
         CaffeineSession session = this.repository.createSession();
@@ -268,4 +1222,23 @@ class CaffeineIndexedSessionRepositoryTests {
 
         assertThat(session.getAttributeNames()).isEmpty();
     }
+
+    static Clock clock(AtomicLong millis) {
+        return new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(millis.get());
+            }
+        };
+    }
 }
\ No newline at end of file
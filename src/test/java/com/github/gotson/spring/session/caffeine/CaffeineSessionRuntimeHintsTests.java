@@ -0,0 +1,117 @@
+package com.github.gotson.spring.session.caffeine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.gotson.spring.session.caffeine.config.annotation.web.http.CaffeineHttpSessionConfiguration;
+import com.github.gotson.spring.session.caffeine.config.annotation.web.http.EnableCaffeineHttpSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.generate.ClassNameGenerator;
+import org.springframework.aot.generate.DefaultGenerationContext;
+import org.springframework.aot.generate.GeneratedFiles.Kind;
+import org.springframework.aot.generate.InMemoryGeneratedFiles;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.aot.ApplicationContextAotGenerator;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.javapoet.ClassName;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.session.Session;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaffeineSessionRuntimeHintsTests {
+
+    private static final String SPRING_SECURITY_CONTEXT = "SPRING_SECURITY_CONTEXT";
+
+    @Test
+    void registerGeneratedCaffeineClassesOfEachConfiguration() {
+        RuntimeHints hints = new RuntimeHints();
+        new CaffeineSessionRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        List<Consumer<CaffeineIndexedSessionRepository>> configurations = List.of(
+            (repository) -> {
+            },
+            (repository) -> repository.setLightweightExpiredEvents(true),
+            (repository) -> repository.setRecordStats(true),
+            (repository) -> repository.setMaximumSize(10L),
+            (repository) -> {
+                repository.setMaximumWeight(1_000_000L);
+                repository.setRecordStats(true);
+                repository.setLightweightExpiredEvents(true);
+            });
+        for (Consumer<CaffeineIndexedSessionRepository> configuration : configurations) {
+            CaffeineIndexedSessionRepository repository = new CaffeineIndexedSessionRepository();
+            repository.setExecutor(Runnable::run);
+            configuration.accept(repository);
+            repository.init();
+            try {
+                CaffeineSession session = repository.createSession();
+                session.setAttribute(SPRING_SECURITY_CONTEXT, new SecurityContextImpl(
+                    new UsernamePasswordAuthenticationToken("username", "notused", AuthorityUtils.NO_AUTHORITIES)));
+                repository.save(session);
+                Cache<String, Session> sessions = ReflectionTestUtils.getField(repository, "sessions");
+                Object resolvedPrincipals = ReflectionTestUtils.getField(repository, "resolvedPrincipals");
+                Cache<?, ?> resolved = ReflectionTestUtils.getField(resolvedPrincipals, "resolved");
+
+                assertGeneratedClassesRegistered(sessions, hints);
+                assertGeneratedClassesRegistered(resolved, hints);
+            } finally {
+                repository.destroy();
+            }
+        }
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(SecurityContextImpl.class, "getAuthentication").invoke())
+            .accepts(hints);
+        assertThat(RuntimeHintsPredicates.serialization().onType(Object[].class)).accepts(hints);
+    }
+
+    private static void assertGeneratedClassesRegistered(Cache<?, ?> localCache, RuntimeHints hints) {
+        Object cache = ReflectionTestUtils.getField(localCache, "cache");
+        Map<?, ?> nodes = ReflectionTestUtils.getField(cache, "data");
+
+        assertThat(RuntimeHintsPredicates.reflection().onType(cache.getClass())
+            .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(nodes.values().iterator().next().getClass())
+            .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)).accepts(hints);
+    }
+
+    @Test
+    void processAheadOfTimeWithoutReflectiveConfiguration() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean(SessionConfig.class);
+        InMemoryGeneratedFiles generatedFiles = new InMemoryGeneratedFiles();
+        DefaultGenerationContext generationContext = new DefaultGenerationContext(
+            new ClassNameGenerator(ClassName.get(SessionConfig.class)), generatedFiles);
+
+        new ApplicationContextAotGenerator().processAheadOfTime(context, generationContext);
+        generationContext.writeGeneratedContent();
+        RuntimeHints hints = generationContext.getRuntimeHints();
+
+        // contributed through aot.factories
+        assertThat(RuntimeHintsPredicates.reflection()
+            .onType(TypeReference.of("com.github.benmanes.caffeine.cache.SSLA"))).accepts(hints);
+        // the attributes of @EnableCaffeineHttpSession are read from the class file of the importing class
+        assertThat(RuntimeHintsPredicates.resource().forResource(TypeReference.of(SessionConfig.class))).accepts(hints);
+        // the @Autowired setters are called by the generated code
+        assertThat(generatedFiles.getGeneratedFiles(Kind.SOURCE)).containsKey(
+            "com/github/gotson/spring/session/caffeine/config/annotation/web/http/CaffeineHttpSessionConfiguration__BeanDefinitions.java");
+        for (String setter : List.of("setApplicationEventPublisher", "setIndexResolver", "setSessionIdGenerator",
+            "setSessionRepositoryCustomizer")) {
+            assertThat(RuntimeHintsPredicates.reflection().onMethod(CaffeineHttpSessionConfiguration.class, setter).invoke())
+                .rejects(hints);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableCaffeineHttpSession(maxInactiveIntervalInSeconds = 600)
+    static class SessionConfig {
+    }
+}
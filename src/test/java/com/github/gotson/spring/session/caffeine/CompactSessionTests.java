@@ -0,0 +1,94 @@
+package com.github.gotson.spring.session.caffeine;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.session.MapSession;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class CompactSessionTests {
+
+    @Test
+    void convertFromAndToMapSession() {
+        MapSession session = new MapSession();
+        session.setCreationTime(Instant.parse("2024-01-01T10:00:00.123456789Z"));
+        session.setLastAccessedTime(Instant.parse("2024-01-01T10:05:00.000000001Z"));
+        session.setMaxInactiveInterval(Duration.ofMinutes(45));
+        session.setAttribute("first", 1);
+        session.setAttribute("second", "2");
+
+        CompactSession compact = CompactSession.from(session, Clock.systemUTC());
+        MapSession restored = new MapSession(compact);
+
+        assertThat(restored.getId()).isEqualTo(session.getId());
+        assertThat(restored.getCreationTime()).isEqualTo(session.getCreationTime());
+        assertThat(restored.getLastAccessedTime()).isEqualTo(session.getLastAccessedTime());
+        assertThat(restored.getMaxInactiveInterval()).isEqualTo(session.getMaxInactiveInterval());
+        assertThat(restored.getAttributeNames()).containsExactlyInAnyOrder("first", "second");
+        assertThat(restored.<Integer>getAttribute("first")).isEqualTo(1);
+        assertThat(restored.<String>getAttribute("second")).isEqualTo("2");
+    }
+
+    @Test
+    void updateAttributes() {
+        CompactSession compact = CompactSession.from(new MapSession(), Clock.systemUTC());
+        compact.setAttribute("first", 1);
+        compact.setAttribute("second", 2);
+        compact.setAttribute("third", 3);
+        compact.setAttribute("first", 10);
+        compact.removeAttribute("second");
+        compact.setAttribute("third", null);
+        compact.removeAttribute("absent");
+
+        assertThat(compact.getAttributeNames()).containsExactly("first");
+        assertThat(compact.<Integer>getAttribute("first")).isEqualTo(10);
+        assertThat(compact.<Integer>getAttribute("second")).isNull();
+    }
+
+    @Test
+    void expireAccordingToTheGivenClock() {
+        Instant now = Instant.parse("2024-01-01T10:00:00Z");
+        Clock clock = Clock.fixed(now, ZoneOffset.UTC);
+        MapSession session = new MapSession();
+        session.setMaxInactiveInterval(Duration.ofSeconds(10));
+        session.setLastAccessedTime(now.minusSeconds(11));
+        assertThat(CompactSession.from(session, clock).isExpired()).isTrue();
+
+        session.setLastAccessedTime(now.minusSeconds(9));
+        assertThat(CompactSession.from(session, clock).isExpired()).isFalse();
+
+        session.setMaxInactiveInterval(Duration.ofSeconds(-1));
+        session.setLastAccessedTime(Instant.EPOCH);
+        assertThat(CompactSession.from(session, clock).isExpired()).isFalse();
+    }
+
+    @Test
+    void cannotBeRenamedInPlace() {
+        CompactSession compact = CompactSession.from(new MapSession(), Clock.systemUTC());
+
+        assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(compact::changeSessionId);
+    }
+
+    @Test
+    void useLessHeapThanMapSession() {
+        MapSession session = new MapSession(SecureSessionIdGenerator.getInstance());
+        session.setAttribute("SPRING_SECURITY_CONTEXT", Boolean.TRUE);
+        session.setAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE, "user");
+        session.setAttribute("org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository.CSRF_TOKEN", "token");
+        CompactSession compact = CompactSession.from(session, Clock.systemUTC());
+
+        // the id generator of the MapSession and the clock of the repository are shared
+        long mapSessionSize = GraphLayout.parseInstance(session).totalSize()
+            - GraphLayout.parseInstance(SecureSessionIdGenerator.getInstance()).totalSize();
+        long compactSessionSize = GraphLayout.parseInstance(compact).totalSize()
+            - GraphLayout.parseInstance(Clock.systemUTC()).totalSize();
+
+        assertThat(compactSessionSize).isLessThan(mapSessionSize - 150);
+    }
+}
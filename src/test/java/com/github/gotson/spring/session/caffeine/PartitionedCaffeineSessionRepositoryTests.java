@@ -0,0 +1,157 @@
+package com.github.gotson.spring.session.caffeine;
+
+import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository.CaffeineSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.entry;
+
+class PartitionedCaffeineSessionRepositoryTests {
+
+    private final AtomicReference<String> tenant = new AtomicReference<>();
+
+    private final PartitionedCaffeineSessionRepository repository = new PartitionedCaffeineSessionRepository(
+        this.tenant::get, () -> {
+            CaffeineIndexedSessionRepository partition = new CaffeineIndexedSessionRepository();
+            partition.setExecutor(Runnable::run);
+            return partition;
+        });
+
+    @AfterEach
+    void destroy() {
+        this.repository.destroy();
+    }
+
+    @Test
+    void isolateTenants() {
+        this.tenant.set("a");
+        CaffeineSession session = this.repository.createSession();
+        session.setAttribute(CaffeineIndexedSessionRepository.PRINCIPAL_NAME_ATTRIBUTE, "user");
+        this.repository.save(session);
+
+        assertThat(this.repository.findById(session.getId())).isNotNull();
+        assertThat(this.repository.findByPrincipalName("user")).containsOnlyKeys(session.getId());
+
+        this.tenant.set("b");
+        assertThat(this.repository.findById(session.getId())).isNull();
+        assertThat(this.repository.findByPrincipalName("user")).isEmpty();
+        this.repository.deleteById(session.getId());
+
+        this.tenant.set(null);
+        this.repository.save(this.repository.createSession());
+
+        assertThat(this.repository.getTenants())
+            .containsExactlyInAnyOrder("a", "b", PartitionedCaffeineSessionRepository.DEFAULT_TENANT);
+        assertThat(this.repository.getPartition("a").getSessionCount()).isEqualTo(1);
+        assertThat(this.repository.getPartition("b").getSessionCount()).isZero();
+    }
+
+    @Test
+    void shareMaximumSizeByWeight() {
+        this.repository.setMaximumSize(30L);
+        this.repository.setTenantWeights(Map.of("a", 2));
+
+        this.tenant.set("a");
+        List<String> sessionsOfA = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            CaffeineSession session = this.repository.createSession();
+            this.repository.save(session);
+            sessionsOfA.add(session.getId());
+        }
+        assertThat(this.repository.getPartition("a").getMaximumSize()).isEqualTo(20L);
+
+        this.tenant.set("b");
+        for (int i = 0; i < 100; i++) {
+            this.repository.save(this.repository.createSession());
+        }
+        this.repository.getPartition("b").cleanUp();
+
+        assertThat(this.repository.getPartition("a").getMaximumSize()).isEqualTo(20L);
+        assertThat(this.repository.getPartition("b").getMaximumSize()).isEqualTo(10L);
+        assertThat(this.repository.getPartition("b").getSessionCount()).isEqualTo(10);
+        this.tenant.set("a");
+        assertThat(sessionsOfA).filteredOn((id) -> this.repository.findById(id) != null).hasSize(15);
+    }
+
+    @Test
+    void neverShareMoreThanMaximumSize() {
+        this.repository.setMaximumSize(4L);
+        this.repository.setTenantWeights(Map.of("a", 2, "b", 1));
+        Map<String, Long> quotas = new HashMap<>();
+        for (String tenant : List.of("c", "a", "b")) {
+            this.tenant.set(tenant);
+            this.repository.save(this.repository.createSession());
+            // set once, the quotas of live partitions do not change
+            quotas.forEach((existing, quota) ->
+                assertThat(this.repository.getPartition(existing).getMaximumSize()).isEqualTo(quota));
+            quotas.put(tenant, this.repository.getPartition(tenant).getMaximumSize());
+        }
+
+        assertThat(quotas).containsOnly(entry("a", 2L), entry("b", 1L), entry("c", 1L));
+        // the share of the tenants without a weight is used up
+        this.tenant.set("d");
+        assertThatIllegalStateException().isThrownBy(this.repository::createSession);
+    }
+
+    @Test
+    void shareColdSessionSweeperBetweenPartitions() {
+        PartitionedCaffeineSessionRepository repository = new PartitionedCaffeineSessionRepository(this.tenant::get, () -> {
+            CaffeineIndexedSessionRepository partition = new CaffeineIndexedSessionRepository();
+            partition.setExecutor(Runnable::run);
+            partition.setColdSessionThreshold(Duration.ofMinutes(5));
+            return partition;
+        });
+        try {
+            for (String tenant : List.of("a", "b", "c")) {
+                this.tenant.set(tenant);
+                repository.save(repository.createSession());
+            }
+
+            assertThat(Thread.getAllStackTraces().keySet())
+                .filteredOn((thread) -> thread.getName().equals("caffeine-session-cold-sweeper"))
+                .hasSizeLessThanOrEqualTo(1);
+        } finally {
+            repository.destroy();
+        }
+    }
+
+    @Test
+    void honourBoundOfFactory() {
+        Map<String, CaffeineIndexedSessionRepository> partitions = new HashMap<>();
+        PartitionedCaffeineSessionRepository repository = new PartitionedCaffeineSessionRepository(this.tenant::get, () -> {
+            CaffeineIndexedSessionRepository partition = new CaffeineIndexedSessionRepository();
+            partition.setExecutor(Runnable::run);
+            if ("weighted".equals(this.tenant.get())) {
+                partition.setMaximumWeight(1_000_000L);
+            } else {
+                partition.setMaximumSize(5L);
+            }
+            return partition;
+        });
+        repository.setMaximumSize(30L);
+        repository.addPartitionListener(partitions::put);
+        try {
+            for (String tenant : List.of("weighted", "a", "b")) {
+                this.tenant.set(tenant);
+                repository.save(repository.createSession());
+            }
+
+            assertThat(partitions).containsOnlyKeys("weighted", "a", "b");
+            assertThat(repository.getPartition("weighted").getMaximumWeight()).isEqualTo(1_000_000L);
+            assertThat(repository.getPartition("weighted").getMaximumSize()).isNull();
+            assertThat(repository.getPartition("a").getMaximumSize()).isEqualTo(5L);
+            assertThat(repository.getPartition("b").getMaximumSize()).isEqualTo(5L);
+        } finally {
+            repository.destroy();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.gotson.spring.session.caffeine.autoconfigure;
+
+import com.github.gotson.spring.session.caffeine.CaffeineIndexedSessionRepository;
+import com.github.gotson.spring.session.caffeine.CaffeineSessionRepositoryManagement;
+import com.github.gotson.spring.session.caffeine.EventDispatchMode;
+import com.github.gotson.spring.session.caffeine.PartitionedCaffeineSessionRepository;
+import com.github.gotson.spring.session.caffeine.TenantResolver;
+import com.github.gotson.spring.session.caffeine.actuate.CaffeineSessionPartitionsEndpoint;
+import com.github.gotson.spring.session.caffeine.actuate.CaffeineSessionsEndpoint;
+import com.github.gotson.spring.session.caffeine.config.annotation.web.http.EnableCaffeineHttpSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.session.SessionAutoConfiguration;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaffeineSessionAutoConfigurationTests {
+
+    private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(CaffeineSessionAutoConfiguration.class, SessionAutoConfiguration.class));
+
+    @Test
+    void defaultConfiguration() {
+        this.contextRunner.run((context) -> {
+            assertThat(context).hasSingleBean(CaffeineIndexedSessionRepository.class);
+            assertThat(context).hasSingleBean(SessionRepositoryFilter.class);
+            assertThat(context).doesNotHaveBean(MeterBinder.class);
+            assertThat(context).hasSingleBean(CaffeineSessionRepositoryManagement.class);
+            CaffeineIndexedSessionRepository repository = context.getBean(CaffeineIndexedSessionRepository.class);
+            assertThat(repository.createSession().getMaxInactiveInterval()).isEqualTo(Duration.ofMinutes(30));
+        });
+    }
+
+    @Test
+    void customConfiguration() {
+        this.contextRunner
+            .withPropertyValues(
+                "spring.session.timeout=10m",
+                "spring.session.caffeine.initial-capacity=1000",
+                "spring.session.caffeine.maximum-size=5000",
+                "spring.session.caffeine.max-session-lifetime=8h",
+                "spring.session.caffeine.lazy-session-creation=true",
+                "spring.session.caffeine.cold-session-threshold=5m",
+                "spring.session.caffeine.executor=direct",
+                "spring.session.caffeine.event-dispatch=synchronous",
+                "spring.session.caffeine.index-names=tenant,region",
+                "spring.session.caffeine.metrics.enabled=true")
+            .run((context) -> {
+                CaffeineIndexedSessionRepository repository = context.getBean(CaffeineIndexedSessionRepository.class);
+                assertThat(repository.createSession().getMaxInactiveInterval()).isEqualTo(Duration.ofMinutes(10));
+                assertThat(ReflectionTestUtils.getField(repository, "initialCapacity")).isEqualTo(1000);
+                assertThat(ReflectionTestUtils.getField(repository, "maximumSize")).isEqualTo(5000L);
+                assertThat(ReflectionTestUtils.getField(repository, "maxSessionLifetime")).isEqualTo(Duration.ofHours(8));
+                assertThat(ReflectionTestUtils.getField(repository, "lazySessionCreation")).isEqualTo(true);
+                assertThat(ReflectionTestUtils.getField(repository, "coldSessionThreshold")).isEqualTo(Duration.ofMinutes(5));
+                assertThat(ReflectionTestUtils.getField(repository, "eventDispatchMode")).isEqualTo(EventDispatchMode.SYNCHRONOUS);
+                assertThat(ReflectionTestUtils.getField(repository, "indexedAttributeNames")).isEqualTo(Set.of("tenant", "region"));
+                assertThat(ReflectionTestUtils.getField(repository, "recordStats")).isEqualTo(true);
+
+                SimpleMeterRegistry registry = new SimpleMeterRegistry();
+                context.getBean(MeterBinder.class).bindTo(registry);
+                assertThat(registry.get("spring.session.caffeine.sessions").gauge().value()).isZero();
+            });
+    }
+
+    @Test
+    void exposeEndpoint() {
+        this.contextRunner
+            .withConfiguration(AutoConfigurations.of(CaffeineSessionsEndpointAutoConfiguration.class))
+            .withPropertyValues(
+                "spring.session.caffeine.maximum-size=5000",
+                "management.endpoints.web.exposure.include=caffeinesessions")
+            .run((context) -> {
+                CaffeineSessionsEndpoint endpoint = context.getBean(CaffeineSessionsEndpoint.class);
+                assertThat(endpoint.caffeineSessions().maximumSize()).isEqualTo(5000L);
+
+                endpoint.configure(1000L, null, 600);
+
+                assertThat(endpoint.caffeineSessions().maximumSize()).isEqualTo(1000L);
+                assertThat(endpoint.caffeineSessions().defaultMaxInactiveInterval()).isEqualTo(600);
+                assertThat(endpoint.expire(0L).expiredSessions()).isZero();
+            });
+    }
+
+    @Test
+    void partitionByTenant() {
+        AtomicReference<String> tenant = new AtomicReference<>("a");
+        this.contextRunner
+            .withConfiguration(AutoConfigurations.of(CaffeineSessionsEndpointAutoConfiguration.class))
+            .withBean(TenantResolver.class, () -> tenant::get)
+            .withPropertyValues(
+                "spring.session.caffeine.maximum-size=5000",
+                "spring.session.caffeine.tenants.maximum-size=100",
+                "spring.session.caffeine.tenants.weights.a=3",
+                "spring.session.caffeine.metrics.enabled=true",
+                "management.endpoints.web.exposure.include=caffeinesessions")
+            .run((context) -> {
+                assertThat(context).hasSingleBean(PartitionedCaffeineSessionRepository.class);
+                assertThat(context).doesNotHaveBean(CaffeineIndexedSessionRepository.class);
+                assertThat(context).doesNotHaveBean(CaffeineSessionRepositoryManagement.class);
+                PartitionedCaffeineSessionRepository repository = context.getBean(PartitionedCaffeineSessionRepository.class);
+                SimpleMeterRegistry registry = new SimpleMeterRegistry();
+                context.getBean(MeterBinder.class).bindTo(registry);
+
+                repository.save(repository.createSession());
+                tenant.set("b");
+                repository.createSession();
+
+                assertThat(repository.getPartition("a").getMaximumSize()).isEqualTo(75L);
+                assertThat(repository.getPartition("b").getMaximumSize()).isEqualTo(25L);
+                assertThat(registry.get("spring.session.caffeine.sessions").tag("tenant", "a").gauge().value())
+                    .isEqualTo(1);
+                assertThat(registry.get("spring.session.caffeine.sessions").tag("tenant", "b").gauge().value())
+                    .isZero();
+                CaffeineSessionPartitionsEndpoint endpoint = context.getBean(CaffeineSessionPartitionsEndpoint.class);
+                assertThat(endpoint.tenants().tenants()).containsOnlyKeys("a", "b");
+                assertThat(endpoint.tenant("a").sessionCount()).isEqualTo(1);
+                assertThat(endpoint.tenant("c")).isNull();
+            });
+    }
+
+    @Test
+    void backsOffWithEnableCaffeineHttpSession() {
+        this.contextRunner
+            .withUserConfiguration(EnableConfig.class)
+            .withPropertyValues("spring.session.caffeine.maximum-size=5000")
+            .run((context) -> {
+                assertThat(context).hasSingleBean(FindByIndexNameSessionRepository.class);
+                CaffeineIndexedSessionRepository repository = context.getBean(CaffeineIndexedSessionRepository.class);
+                assertThat(ReflectionTestUtils.getField(repository, "maximumSize")).isNull();
+            });
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableCaffeineHttpSession
+    static class EnableConfig {
+    }
+}